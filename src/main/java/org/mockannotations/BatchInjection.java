@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Support of the batch injection of the injectors. The targets are grouped by their class, so the selection is done
+ * once per class, and the injections are split into tasks which run on an {@link Executor}.
+ * <p>
+ * {@link #runAll(List, Executor)} returns only when every task has finished, and the completion of each task is
+ * observed through its {@link Future}, so everything written by the tasks happens-before the return.
+ * <p>
+ * The caller never blocks a {@link ForkJoinPool} worker: a worker of the given pool forks the tasks and joins them,
+ * so it runs the queued tasks while it waits, and a worker of any other pool runs the tasks inline.
+ * <p>
+ * @author Balazs Berkes
+ */
+final class BatchInjection {
+
+    private static final int TASKS_PER_THREAD = 4;
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Groups the targets by their runtime class keeping the order of the targets.
+     */
+    static <T> Map<Class<?>, List<T>> groupByClass(Collection<T> targets) {
+        assertNotNull(targets, "Targets cannot be null!");
+        Map<Class<?>, List<T>> groups = new LinkedHashMap<Class<?>, List<T>>();
+        for (T target : targets) {
+            assertNotNull(target, "Target cannot be null!");
+            List<T> group = groups.get(target.getClass());
+            if (isNull(group)) {
+                group = new ArrayList<T>();
+                groups.put(target.getClass(), group);
+            }
+            group.add(target);
+        }
+        return groups;
+    }
+
+    /**
+     * Determines how many targets are injected by one task.
+     */
+    static int chunkSizeOf(int targetCount) {
+        return Math.max(1, targetCount / (PROCESSORS * TASKS_PER_THREAD));
+    }
+
+    /**
+     * Runs the tasks on the executor and waits for all of them. The tasks rejected by the executor run on the calling
+     * thread. The first failure is rethrown after every task has finished. On a worker of a {@link ForkJoinPool} other
+     * than the executor the executor is not used, the tasks run on the calling worker.
+     */
+    static void runAll(List<Runnable> tasks, Executor executor) {
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+        } else if (executor instanceof ForkJoinPool && ForkJoinTask.getPool() == executor) {
+            forkAll(tasks);
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            runInline(tasks);
+        } else {
+            List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+            for (Runnable task : tasks) {
+                futures.add(submit(task, executor));
+            }
+            awaitAll(futures);
+        }
+    }
+
+    private static void forkAll(List<Runnable> tasks) {
+        List<BatchTask> batchTasks = new ArrayList<BatchTask>(tasks.size());
+        for (Runnable task : tasks) {
+            BatchTask batchTask = new BatchTask(task);
+            batchTask.fork();
+            batchTasks.add(batchTask);
+        }
+        Throwable failure = null;
+        for (BatchTask batchTask : batchTasks) {
+            batchTask.join();
+            failure = isNull(failure) ? batchTask.failure : failure;
+        }
+        rethrow(failure);
+    }
+
+    private static void runInline(List<Runnable> tasks) {
+        Throwable failure = null;
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                failure = isNull(failure) ? ex : failure;
+            }
+        }
+        rethrow(failure);
+    }
+
+    private static Future<?> submit(Runnable task, Executor executor) {
+        FutureTask<Void> future = new FutureTask<Void>(task, null);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException ex) {
+            future.run();
+        }
+        return future;
+    }
+
+    private static void awaitAll(List<Future<?>> futures) {
+        boolean interrupted = false;
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    failure = isNull(failure) ? ex.getCause() : failure;
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        rethrow(failure);
+    }
+
+    private static void rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (notNull(failure)) {
+            throw new IllegalStateException("Batch injection failed", failure);
+        }
+    }
+
+    private BatchInjection() {
+    }
+
+    /**
+     * Task of a {@link ForkJoinPool} which keeps the failure of the wrapped task instead of completing exceptionally,
+     * so the original exception is rethrown after every task has been joined.
+     */
+    private static final class BatchTask extends ForkJoinTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Runnable task;
+        private Throwable failure;
+
+        private BatchTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(Void value) {
+        }
+
+        @Override
+        protected boolean exec() {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                failure = ex;
+            }
+            return true;
+        }
+    }
+}
@@ -15,31 +15,151 @@
  */
 package org.mockannotations;
 
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
 import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
 import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.mockannotations.selection.ByTypeSelector;
-import org.mockannotations.selection.MockSelector;
+import org.mockannotations.GeneratedInjectors.GeneratedBinding;
+import org.mockannotations.selection.CandidateSet;
+import org.mockannotations.selection.TypeRankMatrix;
+import org.mockannotations.utils.TypeIds.TypeId;
 
 /**
  * Creates a new instance of the given class.
+ * <p>
+ * A constructor is invoked only if a mock is found for each of its parameters, so no attempt fails because of missing
+ * arguments. The failures of the invoked constructors are reported by the {@link InitializationException} as
+ * {@link ConstructorFailure}s, which do not capture stack traces unless {@link #setStackTraceDiagnostics(boolean)}
+ * turns them on.
+ * <p>
+ * In {@link InstantiationMode#CONSTRUCTOR_FREE} mode no constructor of the class runs: the instance is allocated by the
+ * serialization constructor of the JVM, which is looked up once per class, then the mocks are injected into it by a
+ * {@link MockInjector}. The default mode is set globally by {@link #setDefaultInstantiationMode(InstantiationMode)},
+ * unless the initializer is created with its own default mode. The mode of a class is set per initializer by
+ * {@link #setInstantiationMode(Class, InstantiationMode)}, so it does not affect the other initializers.
  *
  * @author Balazs Berkes
  */
 public class ClassInitializer {
 
+    private static volatile boolean stackTraceDiagnostics = false;
+    private static volatile InstantiationMode defaultInstantiationMode = InstantiationMode.CONSTRUCTOR;
+
+    private final InstantiationMode instantiationMode;
+    private final Map<Class<?>, InstantiationMode> instantiationModes
+            = new ConcurrentHashMap<Class<?>, InstantiationMode>();
+
+    /**
+     * Creates an initializer which follows the global default instantiation mode.
+     */
+    public ClassInitializer() {
+        this.instantiationMode = null;
+    }
+
+    /**
+     * Creates an initializer with its own default instantiation mode, which is not affected by
+     * {@link #setDefaultInstantiationMode(InstantiationMode)}.
+     * <p>
+     * @param instantiationMode the default mode of the initializer
+     */
+    public ClassInitializer(InstantiationMode instantiationMode) {
+        assertNotNull(instantiationMode, "Instantiation mode cannot be null!");
+        this.instantiationMode = instantiationMode;
+    }
+
+    /**
+     * Returns the mode of the classes without their own instantiation mode in the initializers without their own
+     * default mode.
+     * <p>
+     * @return the global default mode
+     */
+    public static InstantiationMode getDefaultInstantiationMode() {
+        return defaultInstantiationMode;
+    }
+
+    /**
+     * Replaces the mode of the classes without their own instantiation mode in the initializers without their own
+     * default mode. It is {@link InstantiationMode#CONSTRUCTOR} by default.
+     * <p>
+     * @param mode the new global default mode
+     */
+    public static void setDefaultInstantiationMode(InstantiationMode mode) {
+        assertNotNull(mode, "Instantiation mode cannot be null!");
+        defaultInstantiationMode = mode;
+    }
+
+    /**
+     * Returns the mode the instances of the class are created by this initializer.
+     * <p>
+     * @param clazz the class to be initialized
+     * @return the mode of the class or the default mode if the class has no own mode
+     */
+    public InstantiationMode getInstantiationMode(Class<?> clazz) {
+        InstantiationMode mode = instantiationModes.get(clazz);
+        if (isNull(mode)) {
+            mode = isNull(instantiationMode) ? defaultInstantiationMode : instantiationMode;
+        }
+        return mode;
+    }
+
+    /**
+     * Sets the mode the instances of the class are created by this initializer, regardless of the default mode.
+     * <p>
+     * @param clazz the class to be initialized
+     * @param mode the mode of the class or {@code null} to follow the default mode again
+     */
+    public void setInstantiationMode(Class<?> clazz, InstantiationMode mode) {
+        assertNotNull(clazz, "Class cannot be null!");
+        if (isNull(mode)) {
+            instantiationModes.remove(clazz);
+        } else {
+            instantiationModes.put(clazz, mode);
+        }
+    }
+
+    /**
+     * Determines whether the {@link ConstructorFailure}s capture the stack trace of the initialization.
+     * <p>
+     * @return {@code true} if the stack traces are captured
+     */
+    public static boolean isStackTraceDiagnostics() {
+        return stackTraceDiagnostics;
+    }
+
+    /**
+     * Turns on or off the stack traces of the {@link ConstructorFailure}s. They are off by default, the cause of a
+     * failure has its own stack trace either way.
+     * <p>
+     * @param enabled {@code true} to capture the stack traces
+     */
+    public static void setStackTraceDiagnostics(boolean enabled) {
+        stackTraceDiagnostics = enabled;
+    }
+
     /**
-     * Initialize an instance of the given class. If the class has multiple
-     * constructors the constructor with the less parameter will be prefered,
-     * however if the initialization fails more parameterized constructor will be
-     * the next.
+     * Initialize an instance of the given class. If the class has a default
+     * constructor it will be prefered, otherwise the constructors whose every
+     * parameter can be injected are tried from the closest match: the lower the
+     * sum of the inheritance distances of the arguments the better, and the
+     * constructor with the less parameter wins the ties. If the class is
+     * {@link InstantiationMode#CONSTRUCTOR_FREE} no constructor runs, the
+     * mocks are injected into the allocated instance instead.
      * <p>
      * @param clazz class to be initialized
      * @param mocks list of mocked object which can be used as constructor
@@ -49,30 +169,78 @@ public class ClassInitializer {
      * @throws InitializationException when initialization failed
      */
     public Object initialize(Class<?> clazz, List<MockHolder> mocks) throws InitializationException {
-        return new Initializer(clazz).withParameters(mocks).initialize();
+        return new Initializer(clazz, getInstantiationMode(clazz)).withParameters(mocks).initialize();
     }
 
     public static class InitializationException extends RuntimeException {
 
+        private final List<ConstructorFailure> failures;
+
         public InitializationException(Class<?> clazz) {
+            this(clazz, Collections.<ConstructorFailure>emptyList());
+        }
+
+        public InitializationException(Class<?> clazz, List<ConstructorFailure> failures) {
             super(String.format("I tried to create an instance of %s but it failed. Please provide an instance of the "
                     + "class before initializing the annotations.", clazz));
+            this.failures = Collections.unmodifiableList(new ArrayList<ConstructorFailure>(failures));
+            for (ConstructorFailure failure : failures) {
+                addSuppressed(failure);
+            }
+        }
+
+        /**
+         * Returns the failures of the constructors which were invoked during the initialization.
+         * <p>
+         * @return unmodifiable list of the failures in the order of the attempts
+         */
+        public List<ConstructorFailure> getFailures() {
+            return failures;
+        }
+    }
+
+    /**
+     * Failure of a constructor invoked with mocks it accepted. The stack trace is captured only if
+     * {@link #isStackTraceDiagnostics()} is on, the exception thrown by the constructor is the cause.
+     */
+    public static class ConstructorFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Constructor<?> constructor;
+
+        public ConstructorFailure(Constructor<?> constructor, Throwable cause, boolean writableStackTrace) {
+            super((isNull(constructor) ? "Constructor-free instantiation" : constructor) + " failed: " + cause, cause,
+                    false, writableStackTrace);
+            this.constructor = constructor;
+        }
+
+        /**
+         * Returns the failed constructor.
+         * <p>
+         * @return the constructor or {@code null} if no serialization constructor was found for a
+         * {@link InstantiationMode#CONSTRUCTOR_FREE} class or the failure has been deserialized
+         */
+        public Constructor<?> getConstructor() {
+            return constructor;
         }
     }
 
     private static class Initializer {
 
-        private static final ConstructorComparator CONSTRUCTOR_COMPARATOR = new ConstructorComparator();
+        private static final Object[] NO_ARGUMENTS = new Object[0];
 
-        private MockSelector<Class<?>> byTypeSelector = ByTypeSelector.getSingleton();
         private List<MockHolder> mocks = Collections.emptyList();
-        private List<Constructor<?>> constructors;
-        private Class<?> clazz;
+        private List<ConstructorFailure> failures = Collections.emptyList();
+        private TypeRankMatrix rankMatrix;
+        private final ConstructorPlan plan;
+        private final Class<?> clazz;
+        private final InstantiationMode mode;
 
-        private Initializer(Class<?> clazz) {
+        private Initializer(Class<?> clazz, InstantiationMode mode) {
             this.clazz = clazz;
-            constructors = Arrays.asList(clazz.getDeclaredConstructors());
-            Collections.sort(constructors, CONSTRUCTOR_COMPARATOR);
+            this.mode = mode;
+            plan = ConstructorPlan.forClass(clazz);
         }
 
         private Initializer withParameters(List<MockHolder> parameters) {
@@ -81,73 +249,470 @@ public class ClassInitializer {
         }
 
         private Object initialize() {
+            Object objectToInitialize;
+            if (mode == InstantiationMode.CONSTRUCTOR_FREE) {
+                objectToInitialize = initializeWithoutConstructor();
+            } else {
+                objectToInitialize = initializeWithConstructors();
+            }
+            if (isNull(objectToInitialize)) {
+                throw new InitializationException(clazz, failures);
+            }
+            return objectToInitialize;
+        }
+
+        private Object initializeWithoutConstructor() {
+            Object instance = null;
+            Constructor<?> serializationConstructor = null;
+            try {
+                serializationConstructor = plan.getSerializationConstructor();
+                instance = serializationConstructor.newInstance();
+            } catch (Exception | LinkageError failure) {
+                report(new ConstructorFailure(serializationConstructor, unwrap(failure), stackTraceDiagnostics));
+            }
+            if (notNull(instance) && notNull(mocks) && !mocks.isEmpty()) {
+                new MockInjector(mocks).injectTo(instance);
+            }
+            return instance;
+        }
+
+        private Object initializeWithConstructors() {
             Object objectToInitialize = initializeWithDefaultConstructor();
             if (isNull(objectToInitialize)) {
-                objectToInitialize = initializeWithParameters();
+                objectToInitialize = initializeWithStickyConstructor();
             }
             if (isNull(objectToInitialize)) {
-                throw new InitializationException(clazz);
+                objectToInitialize = initializeWithParameters();
             }
             return objectToInitialize;
         }
 
-        private Object initializeWithDefaultConstructor() {
-            Constructor<?> defaultConstructor = findDefaultConstructor();
-            return exceptionFreeNewInstance(defaultConstructor);
+        private Object initializeWithStickyConstructor() {
+            Object instance = null;
+            StickyConstructor sticky = plan.getStickyConstructor();
+            if (notNull(sticky) && sticky.isApplicableTo(mocks)) {
+                instance = newInstanceOrReport(sticky.getConstructor(), sticky.selectArguments(mocks));
+            }
+            return instance;
         }
 
-        private Constructor<?> findDefaultConstructor() {
-            Constructor<?> defaultConstructor = null;
-            for (Constructor<?> constructor : constructors) {
-                if (constructor.getParameterTypes().length == 0) {
-                    defaultConstructor = constructor;
-                    break;
-                }
+        private Object initializeWithDefaultConstructor() {
+            Object instance = null;
+            ConstructorCandidate defaultConstructor = plan.getDefaultConstructor();
+            if (notNull(defaultConstructor)) {
+                instance = newInstanceOrReport(defaultConstructor, NO_ARGUMENTS);
             }
-            return defaultConstructor;
+            return instance;
         }
 
         private Object initializeWithParameters() {
             Object testedObject = null;
-            for (Constructor<?> constructor : constructors) {
-                testedObject = tryToCreateInstance(constructor);
-                if (notNull(testedObject)) {
-                    break;
+            if (notNull(mocks) && !mocks.isEmpty()) {
+                for (ScoredConstructor constructor : new ConstructorResolver(getRankMatrix()).resolve(plan)) {
+                    testedObject = tryToCreateInstance(constructor);
+                    if (notNull(testedObject)) {
+                        break;
+                    }
                 }
             }
             return testedObject;
         }
 
-        private Object tryToCreateInstance(Constructor<?> constructor) {
-            constructor.setAccessible(true);
+        private Object tryToCreateInstance(ScoredConstructor scored) {
+            ConstructorCandidate constructor = scored.getConstructor();
+            int[] argumentSlots = scored.getArgumentSlots();
+            Object instance = newInstanceOrReport(constructor, toArguments(argumentSlots));
+            rememberWhenCreated(instance, new StickyConstructor(constructor, mocks, argumentSlots));
+            return instance;
+        }
+
+        private Object newInstanceOrReport(ConstructorCandidate constructor, Object[] arguments) {
             Object instance = null;
-            List<Object> parameterCandidates = selectParameterCandidates(constructor);
-            if (!parameterCandidates.isEmpty()) {
-                instance = exceptionFreeNewInstance(constructor, parameterCandidates.toArray());
+            try {
+                instance = constructor.newInstance(arguments);
+            } catch (Exception | LinkageError failure) {
+                report(new ConstructorFailure(constructor.getConstructor(), unwrap(failure), stackTraceDiagnostics));
             }
             return instance;
         }
 
-        private List<Object> selectParameterCandidates(Constructor<?> constructor) {
-            List<Object> parameterMocks = new ArrayList<Object>();
-            for (Class<?> parameterType : constructor.getParameterTypes()) {
-                List<MockHolder> matchingMocks = byTypeSelector.select(parameterType, mocks);
-                if (matchingMocks.isEmpty()) {
+        private void report(ConstructorFailure failure) {
+            if (failures.isEmpty()) {
+                failures = new ArrayList<ConstructorFailure>(2);
+            }
+            failures.add(failure);
+        }
+
+        /**
+         * Returns the failure thrown by the constructor itself. A {@link VirtualMachineError} is not a failure of the
+         * constructor, it is rethrown.
+         */
+        private static Throwable unwrap(Throwable failure) {
+            Throwable cause = failure instanceof InvocationTargetException && notNull(failure.getCause())
+                    ? failure.getCause() : failure;
+            if (cause instanceof VirtualMachineError) {
+                throw (VirtualMachineError) cause;
+            }
+            return cause;
+        }
+
+        private TypeRankMatrix getRankMatrix() {
+            if (isNull(rankMatrix)) {
+                rankMatrix = TypeRankMatrix.of(mocks);
+            }
+            return rankMatrix;
+        }
+
+        private Object[] toArguments(int[] argumentSlots) {
+            Object[] arguments = new Object[argumentSlots.length];
+            for (int i = 0; i < argumentSlots.length; i++) {
+                arguments[i] = mocks.get(argumentSlots[i]).getMock();
+            }
+            return arguments;
+        }
+
+        private void rememberWhenCreated(Object instance, StickyConstructor constructor) {
+            if (notNull(instance)) {
+                plan.setStickyConstructor(constructor);
+            }
+        }
+    }
+
+    /**
+     * Scores the parameterized constructors of a plan against a list of mocks. The closest mock of each distinct
+     * parameter type is resolved once from the {@link TypeRankMatrix}, so every constructor is scored in one pass.
+     * The constructors with a parameter which cannot be injected are left out, since invoking them would fail anyway.
+     * The others are ordered by the sum of the inheritance distances of their arguments, then by the sum of the tie
+     * breakers of the ranks, the remaining ties are kept in the order of the plan, i.e. the less parameterized
+     * constructor first.
+     */
+    private static class ConstructorResolver {
+
+        private static final long NOT_COVERED = -1L;
+
+        private static final Comparator<ScoredConstructor> SCORE_COMPARATOR = new Comparator<ScoredConstructor>() {
+
+            @Override
+            public int compare(ScoredConstructor left, ScoredConstructor right) {
+                int byDistance = Long.compare(left.getDistance(), right.getDistance());
+                return byDistance != 0 ? byDistance : Long.compare(left.getTieBreaker(), right.getTieBreaker());
+            }
+        };
+
+        private final TypeRankMatrix rankMatrix;
+        private final Map<Class<?>, Long> resolvedParameters = new HashMap<Class<?>, Long>();
+
+        private ConstructorResolver(TypeRankMatrix rankMatrix) {
+            this.rankMatrix = rankMatrix;
+        }
+
+        private List<ScoredConstructor> resolve(ConstructorPlan plan) {
+            List<ScoredConstructor> scored = new ArrayList<ScoredConstructor>();
+            for (ConstructorCandidate constructor : plan.getConstructors()) {
+                ScoredConstructor candidate = score(constructor);
+                if (notNull(candidate)) {
+                    scored.add(candidate);
+                }
+            }
+            Collections.sort(scored, SCORE_COMPARATOR);
+            return scored;
+        }
+
+        private ScoredConstructor score(ConstructorCandidate constructor) {
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length == 0) {
+                return null;
+            }
+            int[] argumentSlots = new int[parameterTypes.length];
+            long distance = 0;
+            long tieBreaker = 0;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                long resolved = resolve(parameterTypes[i]);
+                if (resolved == NOT_COVERED) {
+                    return null;
+                }
+                argumentSlots[i] = (int) (resolved >>> Integer.SIZE);
+                distance += (int) resolved >>> Short.SIZE;
+                tieBreaker += (int) resolved & 0xFFFF;
+            }
+            return new ScoredConstructor(constructor, argumentSlots, distance, tieBreaker);
+        }
+
+        /**
+         * Resolves the closest mock of the parameter type.
+         * <p>
+         * @return the slot in the upper and the packed rank in the lower half, or {@link #NOT_COVERED}
+         */
+        private long resolve(Class<?> parameterType) {
+            Long resolved = resolvedParameters.get(parameterType);
+            if (isNull(resolved)) {
+                int slot = rankMatrix.closestSlot(parameterType);
+                resolved = slot == CandidateSet.NONE ? NOT_COVERED
+                        : ((long) slot << Integer.SIZE) | rankMatrix.rank(parameterType, slot);
+                resolvedParameters.put(parameterType, resolved);
+            }
+            return resolved;
+        }
+    }
+
+    /**
+     * A constructor whose every parameter can be injected, with the slots of its arguments and their distance.
+     */
+    private static class ScoredConstructor {
+
+        private final ConstructorCandidate constructor;
+        private final int[] argumentSlots;
+        private final long distance;
+        private final long tieBreaker;
+
+        private ScoredConstructor(ConstructorCandidate constructor, int[] argumentSlots, long distance,
+                long tieBreaker) {
+            this.constructor = constructor;
+            this.argumentSlots = argumentSlots;
+            this.distance = distance;
+            this.tieBreaker = tieBreaker;
+        }
+
+        private ConstructorCandidate getConstructor() {
+            return constructor;
+        }
+
+        private int[] getArgumentSlots() {
+            return argumentSlots;
+        }
+
+        private long getDistance() {
+            return distance;
+        }
+
+        private long getTieBreaker() {
+            return tieBreaker;
+        }
+    }
+
+    /**
+     * Constructors of a class sorted by the number of their parameters. The plan is computed once per class and it
+     * remembers the constructor which created the last instance, the instantiation mode of the class and its
+     * serialization constructor once it is looked up.
+     */
+    private static class ConstructorPlan {
+
+        private static final ConstructorComparator CONSTRUCTOR_COMPARATOR = new ConstructorComparator();
+        private static final ClassValue<ConstructorPlan> PLANS = new ClassValue<ConstructorPlan>() {
+
+            @Override
+            protected ConstructorPlan computeValue(Class<?> type) {
+                return new ConstructorPlan(type);
+            }
+        };
+
+        private final List<ConstructorCandidate> constructors;
+        private final ConstructorCandidate defaultConstructor;
+        private final Class<?> clazz;
+        private volatile StickyConstructor stickyConstructor;
+        private volatile Constructor<?> serializationConstructor;
+
+        private static ConstructorPlan forClass(Class<?> clazz) {
+            return PLANS.get(clazz);
+        }
+
+        private ConstructorPlan(Class<?> clazz) {
+            this.clazz = clazz;
+            List<Constructor<?>> sortedConstructors = Arrays.asList(clazz.getDeclaredConstructors());
+            Collections.sort(sortedConstructors, CONSTRUCTOR_COMPARATOR);
+            GeneratedBinding binding = GeneratedInjectors.bindingFor(clazz);
+            List<ConstructorCandidate> candidates = new ArrayList<ConstructorCandidate>();
+            for (Constructor<?> constructor : sortedConstructors) {
+                candidates.add(new ConstructorCandidate(constructor, binding));
+            }
+            constructors = Collections.unmodifiableList(candidates);
+            defaultConstructor = findDefaultConstructor();
+        }
+
+        private ConstructorCandidate findDefaultConstructor() {
+            ConstructorCandidate found = null;
+            for (ConstructorCandidate constructor : constructors) {
+                if (constructor.getParameterTypes().length == 0) {
+                    found = constructor;
                     break;
                 }
-                parameterMocks.add(matchingMocks.get(0).getMock());
             }
-            return parameterMocks;
+            return found;
+        }
+
+        private List<ConstructorCandidate> getConstructors() {
+            return constructors;
+        }
+
+        private ConstructorCandidate getDefaultConstructor() {
+            return defaultConstructor;
+        }
+
+        private StickyConstructor getStickyConstructor() {
+            return stickyConstructor;
+        }
+
+        private void setStickyConstructor(StickyConstructor stickyConstructor) {
+            this.stickyConstructor = stickyConstructor;
+        }
+
+        private Constructor<?> getSerializationConstructor() throws ReflectiveOperationException {
+            Constructor<?> constructor = serializationConstructor;
+            if (isNull(constructor)) {
+                constructor = SerializationConstructors.of(clazz);
+                serializationConstructor = constructor;
+            }
+            return constructor;
+        }
+    }
+
+    /**
+     * A constructor together with its parameter types and its invoker. The constructor is invoked by the
+     * {@link GeneratedInjector} of the class when it is available, otherwise by a cached {@link MethodHandle}.
+     */
+    private static class ConstructorCandidate {
+
+        private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+        private final Constructor<?> constructor;
+        private final Class<?>[] parameterTypes;
+        private final GeneratedInjector generatedInjector;
+        private final int generatedIndex;
+        private final MethodHandle invoker;
+
+        private ConstructorCandidate(Constructor<?> constructor, GeneratedBinding binding) {
+            this.constructor = constructor;
+            this.parameterTypes = constructor.getParameterTypes();
+            this.generatedInjector = binding.getInjector();
+            this.generatedIndex = binding.isPresent() ? binding.constructorIndexOf(parameterTypes) : GeneratedInjectors.NOT_GENERATED;
+            this.invoker = generatedIndex == GeneratedInjectors.NOT_GENERATED ? bindInvoker(constructor, parameterTypes.length) : null;
+        }
+
+        private Constructor<?> getConstructor() {
+            return constructor;
+        }
+
+        private Class<?>[] getParameterTypes() {
+            return parameterTypes;
+        }
+
+        /**
+         * Invokes the constructor. The errors thrown by the constructor through the generated injector or the method
+         * handle are wrapped into {@link InvocationTargetException} like reflection does, except the
+         * {@link VirtualMachineError}s.
+         */
+        private Object newInstance(Object[] arguments) throws Exception {
+            if (generatedIndex == GeneratedInjectors.NOT_GENERATED && isNull(invoker)) {
+                return constructor.newInstance(arguments);
+            }
+            try {
+                return generatedIndex != GeneratedInjectors.NOT_GENERATED
+                        ? generatedInjector.newInstance(generatedIndex, arguments)
+                        : (Object) invoker.invokeExact(arguments);
+            } catch (Exception | VirtualMachineError failure) {
+                throw failure;
+            } catch (Throwable failure) {
+                throw new InvocationTargetException(failure);
+            }
+        }
+
+        private static MethodHandle bindInvoker(Constructor<?> constructor, int parameterCount) {
+            MethodHandle handle = null;
+            try {
+                constructor.setAccessible(true);
+                handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, parameterCount)
+                        .asType(INVOKER_TYPE);
+            } catch (Exception ignored) {
+                /* Falling back to reflective instantiation */
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * The parameterized constructor which created the last instance of a class and the mock slots used as its
+     * arguments. It can be reused as long as the mocks have the same types in the same order, since the type based
+     * selection would pick the very same slots. The types are kept as their {@link TypeId}s, so the plan of the class
+     * does not pin the generated classes of the mocks.
+     */
+    private static class StickyConstructor {
+
+        private final ConstructorCandidate constructor;
+        private final TypeId[] mockTypeIds;
+        private final int[] argumentSlots;
+
+        private StickyConstructor(ConstructorCandidate constructor, List<MockHolder> mocks, int[] argumentSlots) {
+            this.constructor = constructor;
+            this.mockTypeIds = typeIdsOf(mocks);
+            this.argumentSlots = argumentSlots;
+        }
+
+        private ConstructorCandidate getConstructor() {
+            return constructor;
+        }
+
+        private boolean isApplicableTo(List<MockHolder> mocks) {
+            return notNull(mocks) && Arrays.equals(mockTypeIds, typeIdsOf(mocks));
+        }
+
+        private Object[] selectArguments(List<MockHolder> mocks) {
+            Object[] arguments = new Object[argumentSlots.length];
+            for (int i = 0; i < argumentSlots.length; i++) {
+                arguments[i] = mocks.get(argumentSlots[i]).getMock();
+            }
+            return arguments;
+        }
+
+        private static TypeId[] typeIdsOf(List<MockHolder> mocks) {
+            TypeId[] typeIds = new TypeId[mocks.size()];
+            for (int i = 0; i < typeIds.length; i++) {
+                typeIds[i] = mocks.get(i).getTypeId();
+            }
+            return typeIds;
         }
+    }
+
+    /**
+     * Looks up the serialization constructors of the JVM. A serialization constructor allocates an instance of the
+     * class and runs only the constructor of {@link Object}. The internal factory is reached by reflection, so the
+     * library neither compiles nor links against it.
+     */
+    private static class SerializationConstructors {
+
+        private static final String REFLECTION_FACTORY = "sun.reflect.ReflectionFactory";
 
-        private Object exceptionFreeNewInstance(Constructor<?> constructor, Object... arguments) {
-            Object newInstance = null;
+        private static final Object factory;
+        private static final Method newConstructorForSerialization;
+
+        static {
+            Object foundFactory = null;
+            Method foundMethod = null;
             try {
-                newInstance = constructor.newInstance(arguments);
+                Class<?> factoryClass = Class.forName(REFLECTION_FACTORY);
+                foundFactory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+                foundMethod = factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
             } catch (Exception ignored) {
-                /* Ignoring any exception */
+                /* Constructor-free instantiation is not supported */
+            }
+            factory = foundFactory;
+            newConstructorForSerialization = foundMethod;
+        }
+
+        private static Constructor<?> of(Class<?> clazz) throws ReflectiveOperationException {
+            if (isNull(newConstructorForSerialization)) {
+                throw new UnsupportedOperationException(REFLECTION_FACTORY + " is not available!");
             }
-            return newInstance;
+            if (Modifier.isAbstract(clazz.getModifiers()) || clazz.isPrimitive() || clazz.isArray()) {
+                throw new InstantiationException(clazz + " cannot be allocated!");
+            }
+            Constructor<?> constructor = (Constructor<?>) newConstructorForSerialization.invoke(factory, clazz,
+                    Object.class.getDeclaredConstructor());
+            if (isNull(constructor)) {
+                throw new InstantiationException("No serialization constructor for " + clazz);
+            }
+            constructor.setAccessible(true);
+            return constructor;
         }
     }
 
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+
+/**
+ * Writes the already resolved mocks into the fields of one specific class.
+ * <p>
+ * @author Balazs Berkes
+ */
+public interface ClassInjector {
+
+    /**
+     * Injects the resolved mocks into the target object. The elements of {@code resolvedMocks} are assigned to the
+     * fields of {@link ClassMetadata#getWritableFields()} with the same index, {@code null} elements are skipped.
+     * <p>
+     * @param target object to be injected
+     * @param resolvedMocks the mocks to inject in the order of the writable fields
+     * <p>
+     * @throws UnableToWriteFieldException when setting a field failed
+     */
+    void inject(Object target, Object[] resolvedMocks) throws UnableToWriteFieldException;
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+/**
+ * Injector of one tested class generated at compile time by
+ * {@link org.mockannotations.processing.InjectorProcessor}. The implementations are discovered through
+ * {@link java.util.ServiceLoader} and they are preferred to reflection by {@link MockInjector},
+ * {@link SetterMockInjector} and {@link ClassInitializer}.
+ * <p>
+ * Members are identified by their signatures:
+ * <ul>
+ * <li>fields: {@code <binary name of the declaring class>#<field name>}</li>
+ * <li>setters: {@code <method name>(<binary name of the parameter type>)}</li>
+ * <li>constructors: {@code (<binary names of the parameter types separated by commas>)}</li>
+ * </ul>
+ * The index of a member in the returned signature array is used to address it.
+ * <p>
+ * @author Balazs Berkes
+ */
+public interface GeneratedInjector {
+
+    /**
+     * Returns the class which is injected by this injector.
+     * <p>
+     * @return the injected class
+     */
+    Class<?> getTargetClass();
+
+    /**
+     * Returns the signatures of the fields which can be written by {@link #setField(Object, int, Object)}.
+     * <p>
+     * @return the signatures of the fields
+     */
+    String[] getFieldSignatures();
+
+    /**
+     * Sets a field of the target object.
+     * <p>
+     * @param target object to be injected
+     * @param index index of the field in {@link #getFieldSignatures()}
+     * @param value value to set
+     */
+    void setField(Object target, int index, Object value);
+
+    /**
+     * Returns the signatures of the setters which can be invoked by {@link #invokeSetter(Object, int, Object)}.
+     * <p>
+     * @return the signatures of the setters
+     */
+    String[] getSetterSignatures();
+
+    /**
+     * Invokes a setter of the target object.
+     * <p>
+     * @param target object to be injected
+     * @param index index of the setter in {@link #getSetterSignatures()}
+     * @param value value to set
+     */
+    void invokeSetter(Object target, int index, Object value);
+
+    /**
+     * Returns the signatures of the constructors which can be invoked by {@link #newInstance(int, Object[])}. The
+     * constructors are ordered by the number of their parameters.
+     * <p>
+     * @return the signatures of the constructors
+     */
+    String[] getConstructorSignatures();
+
+    /**
+     * Creates a new instance of the target class.
+     * <p>
+     * @param index index of the constructor in {@link #getConstructorSignatures()}
+     * @param arguments arguments of the constructor
+     * @return the new instance
+     */
+    Object newInstance(int index, Object[] arguments);
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+import org.mockannotations.utils.SetterDescriptor;
+
+/**
+ * Registry of the {@link GeneratedInjector}s. The injectors are loaded by {@link ServiceLoader} from the class loader
+ * of the injected class and they are bound to the cached reflection metadata of the class once. A provider which cannot
+ * be loaded, e.g. a stale service entry or an injector which fails to link, is skipped, so its class is injected by
+ * reflection.
+ * <p>
+ * The injectors of a class loader are cached weakly and they are kept alive by the bindings of its classes, so the
+ * cache reaches neither the class loader nor its classes and the class loader can be collected.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class GeneratedInjectors {
+
+    static final int NOT_GENERATED = -1;
+
+    private static final Map<ClassLoader, WeakReference<Map<Class<?>, GeneratedInjector>>> loadedInjectors
+            = Collections.synchronizedMap(new WeakHashMap<ClassLoader, WeakReference<Map<Class<?>, GeneratedInjector>>>());
+
+    private static final ClassValue<GeneratedBinding> bindings = new ClassValue<GeneratedBinding>() {
+
+        @Override
+        protected GeneratedBinding computeValue(Class<?> type) {
+            Map<Class<?>, GeneratedInjector> injectors = loadInjectors(type.getClassLoader());
+            return new GeneratedBinding(type, injectors.get(type), injectors);
+        }
+    };
+
+    /**
+     * Finds the generated injector of the given class.
+     * <p>
+     * @param type the injected class
+     * @return the generated injector or {@code null} when there is no injector generated for the class
+     */
+    public static GeneratedInjector find(Class<?> type) {
+        return bindingFor(type).getInjector();
+    }
+
+    static GeneratedBinding bindingFor(Class<?> type) {
+        return bindings.get(type);
+    }
+
+    /**
+     * Provides an injector of the class which writes the fields by the generated injector when it is available,
+     * otherwise by the given engine.
+     */
+    static ClassInjector classInjectorFor(Class<?> type, InjectionEngine engine) {
+        GeneratedBinding binding = bindingFor(type);
+        return binding.isPresent() ? binding.getClassInjector() : engine.injectorFor(type);
+    }
+
+    private static Map<Class<?>, GeneratedInjector> loadInjectors(ClassLoader classLoader) {
+        Map<Class<?>, GeneratedInjector> injectors = Collections.emptyMap();
+        if (notNull(classLoader)) {
+            WeakReference<Map<Class<?>, GeneratedInjector>> cached = loadedInjectors.get(classLoader);
+            injectors = isNull(cached) ? null : cached.get();
+            if (isNull(injectors)) {
+                injectors = doLoadInjectors(classLoader);
+                loadedInjectors.put(classLoader, new WeakReference<Map<Class<?>, GeneratedInjector>>(injectors));
+            }
+        }
+        return injectors;
+    }
+
+    private static Map<Class<?>, GeneratedInjector> doLoadInjectors(ClassLoader classLoader) {
+        Map<Class<?>, GeneratedInjector> injectors = new HashMap<Class<?>, GeneratedInjector>();
+        Iterator<GeneratedInjector> providers = ServiceLoader.load(GeneratedInjector.class, classLoader).iterator();
+        boolean hasNext = true;
+        while (hasNext) {
+            try {
+                hasNext = providers.hasNext();
+                if (hasNext) {
+                    GeneratedInjector injector = providers.next();
+                    injectors.put(injector.getTargetClass(), injector);
+                }
+            } catch (ServiceConfigurationError skipped) {
+                /* The service loader has moved past the broken provider, the rest is still loaded */
+            } catch (LinkageError skipped) {
+                /* The injector was instantiated but its target class cannot be linked */
+            }
+        }
+        return injectors;
+    }
+
+    static String signatureOf(Field field) {
+        return field.getDeclaringClass().getName() + "#" + field.getName();
+    }
+
+    static String signatureOf(Method setter) {
+        return setter.getName() + "(" + setter.getParameterTypes()[0].getName() + ")";
+    }
+
+    static String signatureOf(Class<?>[] parameterTypes) {
+        StringBuilder signature = new StringBuilder("(");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(parameterTypes[i].getName());
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * A generated injector bound to the cached reflection metadata of its class. The indexes of the fields and
+     * setters are aligned to {@link ClassMetadata#getWritableFields()} and {@link ClassMetadata#getSetters()}.
+     */
+    static final class GeneratedBinding {
+
+        private final GeneratedInjector injector;
+        private final Map<Class<?>, GeneratedInjector> loaderInjectors;
+        private final Class<?> type;
+        private volatile ClassInjector classInjector;
+        private volatile int[] setterIndexes;
+        private volatile Map<String, Integer> constructorIndexes;
+
+        /**
+         * @param loaderInjectors the injectors of the class loader of the class, kept cached while the binding lives
+         */
+        private GeneratedBinding(Class<?> type, GeneratedInjector injector,
+                Map<Class<?>, GeneratedInjector> loaderInjectors) {
+            this.type = type;
+            this.injector = injector;
+            this.loaderInjectors = loaderInjectors;
+        }
+
+        boolean isPresent() {
+            return notNull(injector);
+        }
+
+        GeneratedInjector getInjector() {
+            return injector;
+        }
+
+        ClassInjector getClassInjector() {
+            ClassInjector bound = classInjector;
+            if (isNull(bound)) {
+                bound = new GeneratedClassInjector(injector, indexFields(), ClassMetadata.forClass(type).getWritableFields());
+                classInjector = bound;
+            }
+            return bound;
+        }
+
+        int setterIndexOf(int setterPosition) {
+            int[] indexes = setterIndexes;
+            if (isNull(indexes)) {
+                indexes = indexSetters();
+                setterIndexes = indexes;
+            }
+            return indexes[setterPosition];
+        }
+
+        int constructorIndexOf(Class<?>[] parameterTypes) {
+            Map<String, Integer> indexes = constructorIndexes;
+            if (isNull(indexes)) {
+                indexes = indexOf(injector.getConstructorSignatures());
+                constructorIndexes = indexes;
+            }
+            Integer index = indexes.get(signatureOf(parameterTypes));
+            return isNull(index) ? NOT_GENERATED : index;
+        }
+
+        private int[] indexFields() {
+            Map<String, Integer> generated = indexOf(injector.getFieldSignatures());
+            List<FieldMetadata> fields = ClassMetadata.forClass(type).getWritableFields();
+            int[] indexes = new int[fields.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = lookup(generated, signatureOf(fields.get(i).getField()));
+            }
+            return indexes;
+        }
+
+        private int[] indexSetters() {
+            Map<String, Integer> generated = indexOf(injector.getSetterSignatures());
+            List<SetterDescriptor> setters = ClassMetadata.forClass(type).getSetters();
+            int[] indexes = new int[setters.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = lookup(generated, signatureOf(setters.get(i).getMethod()));
+            }
+            return indexes;
+        }
+
+        private static int lookup(Map<String, Integer> indexes, String signature) {
+            Integer index = indexes.get(signature);
+            return isNull(index) ? NOT_GENERATED : index;
+        }
+
+        private static Map<String, Integer> indexOf(String[] signatures) {
+            Map<String, Integer> indexes = new HashMap<String, Integer>();
+            for (int i = 0; i < signatures.length; i++) {
+                indexes.put(signatures[i], i);
+            }
+            return indexes;
+        }
+    }
+
+    /**
+     * Writes the fields by the generated injector and falls back to the field accessors for the fields the generated
+     * code cannot reach, e.g. private ones.
+     */
+    private static final class GeneratedClassInjector implements ClassInjector {
+
+        private final GeneratedInjector injector;
+        private final int[] fieldIndexes;
+        private final List<FieldMetadata> fields;
+
+        private GeneratedClassInjector(GeneratedInjector injector, int[] fieldIndexes, List<FieldMetadata> fields) {
+            this.injector = injector;
+            this.fieldIndexes = fieldIndexes;
+            this.fields = fields;
+        }
+
+        @Override
+        public void inject(Object target, Object[] resolvedMocks) throws UnableToWriteFieldException {
+            for (int i = 0; i < resolvedMocks.length; i++) {
+                Object mock = resolvedMocks[i];
+                if (notNull(mock)) {
+                    write(i, target, mock);
+                }
+            }
+        }
+
+        private void write(int position, Object target, Object mock) throws UnableToWriteFieldException {
+            int index = fieldIndexes[position];
+            if (index == NOT_GENERATED) {
+                fields.get(position).getAccessor().set(target, mock);
+            } else {
+                try {
+                    injector.setField(target, index, mock);
+                } catch (ClassCastException ex) {
+                    throw new UnableToWriteFieldException(fields.get(position).getField(), ex);
+                }
+            }
+        }
+    }
+
+    private GeneratedInjectors() {
+    }
+}
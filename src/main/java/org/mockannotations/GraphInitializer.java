@@ -0,0 +1,342 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.mockannotations.selection.CandidateSet;
+import org.mockannotations.selection.TypeRankMatrix;
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+
+/**
+ * Initializes a graph of tested classes which depend on each other, then injects them into each other.
+ * <p>
+ * A class depends on another class of the graph if one of its constructor parameters or one of its injectable fields
+ * can hold an instance of the other class. The constructor dependencies are ordered topologically: the classes of a
+ * level depend only on the classes of the previous levels, so they are instantiated in parallel by the
+ * {@link ClassInitializer} with the mocks and the instances of their constructor dependencies. The constructor
+ * dependencies of a class which is created without constructor parameters, i.e. which has a default constructor or is
+ * {@link InstantiationMode#CONSTRUCTOR_FREE}, are ignored. When the remaining classes cannot be ordered, the first
+ * class on a cycle with a constructor whose every parameter is covered by the mocks alone is created with the mocks
+ * only, so the overloaded constructors do not form false cycles. The classes which only depend on a cycle keep their
+ * dependencies. The initialization fails only if no class on a cycle has such a constructor.
+ * <p>
+ * The field dependencies do not constrain the order, the fields are injected once every instance has been created, so
+ * instances may refer to each other through their fields. Every instance is injected by a {@link MockInjector} of the
+ * mocks and the instances of its field dependencies.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class GraphInitializer {
+
+    private final ForkJoinPool pool;
+    private final ClassInitializer classInitializer;
+
+    /**
+     * Creates an initializer which runs on the common {@link ForkJoinPool}.
+     */
+    public GraphInitializer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public GraphInitializer(ForkJoinPool pool) {
+        this(pool, new ClassInitializer());
+    }
+
+    /**
+     * Creates an initializer which creates the instances by the given {@link ClassInitializer}, so the classes are
+     * instantiated in its {@link InstantiationMode}s.
+     * <p>
+     * @param pool the pool of the initialization
+     * @param classInitializer the initializer of the classes
+     */
+    public GraphInitializer(ForkJoinPool pool, ClassInitializer classInitializer) {
+        assertNotNull(pool, "Pool cannot be null!");
+        assertNotNull(classInitializer, "Class initializer cannot be null!");
+        this.pool = pool;
+        this.classInitializer = classInitializer;
+    }
+
+    /**
+     * Creates and injects an instance of each class.
+     * <p>
+     * @param classes the classes of the graph
+     * @param mocks the mocks to be used as constructor parameters and injected into the fields
+     * @return the instances of the classes in the order of the given classes
+     * <p>
+     * @throws CyclicDependencyException when the constructor dependencies form a cycle
+     * @throws ClassInitializer.InitializationException when a class cannot be initialized
+     */
+    public Map<Class<?>, Object> initialize(Collection<Class<?>> classes, List<MockHolder> mocks) {
+        assertNotNull(classes, "Classes cannot be null!");
+        assertNotNull(mocks, "Mocks cannot be null!");
+        DependencyGraph graph = new DependencyGraph(classes, mocks, classInitializer);
+        Map<Class<?>, MockHolder> instances = new ConcurrentHashMap<Class<?>, MockHolder>();
+        for (List<Class<?>> level : graph.getLevels()) {
+            List<Runnable> tasks = new ArrayList<Runnable>(level.size());
+            for (Class<?> clazz : level) {
+                tasks.add(new InitializationTask(clazz, withInstancesOf(graph.constructorDependenciesOf(clazz),
+                        instances, mocks), instances));
+            }
+            BatchInjection.runAll(tasks, pool);
+        }
+        List<Runnable> tasks = new ArrayList<Runnable>(instances.size());
+        for (Class<?> clazz : graph.getClasses()) {
+            tasks.add(new InjectionTask(instances.get(clazz).getMock(),
+                    withInstancesOf(graph.fieldDependenciesOf(clazz), instances, mocks)));
+        }
+        BatchInjection.runAll(tasks, pool);
+        Map<Class<?>, Object> initialized = new LinkedHashMap<Class<?>, Object>();
+        for (Class<?> clazz : graph.getClasses()) {
+            initialized.put(clazz, instances.get(clazz).getMock());
+        }
+        return initialized;
+    }
+
+    private static List<MockHolder> withInstancesOf(Set<Class<?>> dependencies, Map<Class<?>, MockHolder> instances,
+            List<MockHolder> mocks) {
+        List<MockHolder> holders = new ArrayList<MockHolder>(mocks.size() + dependencies.size());
+        holders.addAll(mocks);
+        for (Class<?> dependency : dependencies) {
+            holders.add(instances.get(dependency));
+        }
+        return holders;
+    }
+
+    /**
+     * Thrown when the constructor dependencies of the classes form a cycle, so none of them can be created first.
+     */
+    public static class CyclicDependencyException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Set<Class<?>> classes;
+
+        public CyclicDependencyException(Set<Class<?>> classes) {
+            super("The constructors of " + classes + " depend on each other in a cycle. Please provide a default "
+                    + "constructor or make one of the classes constructor-free.");
+            this.classes = Collections.unmodifiableSet(new LinkedHashSet<Class<?>>(classes));
+        }
+
+        /**
+         * Returns the classes which could not be ordered, the classes of the cycles and the classes depending on them.
+         * <p>
+         * @return unmodifiable set of the classes
+         */
+        public Set<Class<?>> getClasses() {
+            return classes;
+        }
+    }
+
+    private class InitializationTask implements Runnable {
+
+        private final Class<?> clazz;
+        private final List<MockHolder> parameters;
+        private final Map<Class<?>, MockHolder> instances;
+
+        InitializationTask(Class<?> clazz, List<MockHolder> parameters, Map<Class<?>, MockHolder> instances) {
+            this.clazz = clazz;
+            this.parameters = parameters;
+            this.instances = instances;
+        }
+
+        @Override
+        public void run() {
+            Object instance = classInitializer.initialize(clazz, parameters);
+            instances.put(clazz, MockHolder.create(instance, null, clazz.getSimpleName()).freeze());
+        }
+    }
+
+    private static class InjectionTask implements Runnable {
+
+        private final Object target;
+        private final List<MockHolder> mocks;
+
+        InjectionTask(Object target, List<MockHolder> mocks) {
+            this.target = target;
+            this.mocks = mocks;
+        }
+
+        @Override
+        public void run() {
+            new MockInjector(mocks).injectTo(target);
+        }
+    }
+
+    /**
+     * Dependencies of the classes of a graph and the levels of their topological order.
+     */
+    private static class DependencyGraph {
+
+        private final List<Class<?>> classes;
+        private final ClassInitializer classInitializer;
+        private final TypeRankMatrix mockRanks;
+        private final Map<Class<?>, Set<Class<?>>> constructorDependencies
+                = new LinkedHashMap<Class<?>, Set<Class<?>>>();
+        private final Map<Class<?>, Set<Class<?>>> fieldDependencies = new LinkedHashMap<Class<?>, Set<Class<?>>>();
+        private final List<List<Class<?>>> levels;
+
+        DependencyGraph(Collection<Class<?>> classes, List<MockHolder> mocks, ClassInitializer classInitializer) {
+            this.classes = new ArrayList<Class<?>>(new LinkedHashSet<Class<?>>(classes));
+            this.classInitializer = classInitializer;
+            this.mockRanks = TypeRankMatrix.of(mocks);
+            for (Class<?> clazz : this.classes) {
+                assertNotNull(clazz, "Class cannot be null!");
+                constructorDependencies.put(clazz, findConstructorDependencies(clazz));
+                fieldDependencies.put(clazz, findFieldDependencies(clazz));
+            }
+            this.levels = orderTopologically();
+        }
+
+        List<Class<?>> getClasses() {
+            return classes;
+        }
+
+        List<List<Class<?>>> getLevels() {
+            return levels;
+        }
+
+        Set<Class<?>> constructorDependenciesOf(Class<?> clazz) {
+            return constructorDependencies.get(clazz);
+        }
+
+        Set<Class<?>> fieldDependenciesOf(Class<?> clazz) {
+            return fieldDependencies.get(clazz);
+        }
+
+        private Set<Class<?>> findConstructorDependencies(Class<?> clazz) {
+            Set<Class<?>> dependencies = new LinkedHashSet<Class<?>>();
+            if (isCreatedWithParameters(clazz)) {
+                for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+                    for (Class<?> parameterType : constructor.getParameterTypes()) {
+                        addAssignableTo(parameterType, clazz, dependencies);
+                    }
+                }
+            }
+            return dependencies;
+        }
+
+        private Set<Class<?>> findFieldDependencies(Class<?> clazz) {
+            Set<Class<?>> dependencies = new LinkedHashSet<Class<?>>();
+            for (FieldMetadata field : ClassMetadata.forClass(clazz).getWritableFields()) {
+                addAssignableTo(field.getField().getType(), clazz, dependencies);
+            }
+            return dependencies;
+        }
+
+        private void addAssignableTo(Class<?> type, Class<?> dependent, Set<Class<?>> dependencies) {
+            for (Class<?> candidate : classes) {
+                if (candidate != dependent && type.isAssignableFrom(candidate)) {
+                    dependencies.add(candidate);
+                }
+            }
+        }
+
+        private List<List<Class<?>>> orderTopologically() {
+            List<List<Class<?>>> ordered = new ArrayList<List<Class<?>>>();
+            Set<Class<?>> remaining = new LinkedHashSet<Class<?>>(classes);
+            Set<Class<?>> created = new LinkedHashSet<Class<?>>();
+            while (!remaining.isEmpty()) {
+                List<Class<?>> level = new ArrayList<Class<?>>();
+                for (Class<?> clazz : remaining) {
+                    if (created.containsAll(constructorDependencies.get(clazz))) {
+                        level.add(clazz);
+                    }
+                }
+                if (level.isEmpty()) {
+                    level.add(fallBackToMocks(remaining));
+                }
+                remaining.removeAll(level);
+                created.addAll(level);
+                ordered.add(level);
+            }
+            return ordered;
+        }
+
+        private Class<?> fallBackToMocks(Set<Class<?>> remaining) {
+            for (Class<?> clazz : remaining) {
+                if (isOnCycle(clazz, remaining) && isCreatedByMocks(clazz)) {
+                    constructorDependencies.put(clazz, Collections.<Class<?>>emptySet());
+                    return clazz;
+                }
+            }
+            throw new CyclicDependencyException(remaining);
+        }
+
+        private boolean isOnCycle(Class<?> clazz, Set<Class<?>> remaining) {
+            Set<Class<?>> visited = new HashSet<Class<?>>();
+            Deque<Class<?>> pending = new ArrayDeque<Class<?>>(constructorDependencies.get(clazz));
+            while (!pending.isEmpty()) {
+                Class<?> dependency = pending.pop();
+                if (dependency == clazz) {
+                    return true;
+                }
+                if (remaining.contains(dependency) && visited.add(dependency)) {
+                    pending.addAll(constructorDependencies.get(dependency));
+                }
+            }
+            return false;
+        }
+
+        private boolean isCreatedByMocks(Class<?> clazz) {
+            boolean created = false;
+            for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+                Class<?>[] parameterTypes = constructor.getParameterTypes();
+                created = parameterTypes.length > 0;
+                for (int i = 0; created && i < parameterTypes.length; i++) {
+                    created = mockRanks.closestSlot(parameterTypes[i]) != CandidateSet.NONE;
+                }
+                if (created) {
+                    break;
+                }
+            }
+            return created;
+        }
+
+        private boolean isCreatedWithParameters(Class<?> clazz) {
+            return classInitializer.getInstantiationMode(clazz) == InstantiationMode.CONSTRUCTOR
+                    && isNull(defaultConstructorOf(clazz));
+        }
+
+        private static Constructor<?> defaultConstructorOf(Class<?> clazz) {
+            Constructor<?> found = null;
+            for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+                if (constructor.getParameterTypes().length == 0) {
+                    found = constructor;
+                    break;
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+/**
+ * Backend of {@link MockInjector} which provides the {@link ClassInjector} of the injected classes.
+ * <p>
+ * @author Balazs Berkes
+ * @see InjectionEngines
+ */
+public interface InjectionEngine {
+
+    /**
+     * Provides the injector of the given class.
+     * <p>
+     * @param type the class to be injected
+     * @return the injector of the class
+     */
+    ClassInjector injectorFor(Class<?> type);
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Objects;
+
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+import org.mockannotations.utils.FieldAccessor;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+
+/**
+ * Provides the built-in {@link InjectionEngine}s and holds the default one used by {@link MockInjector}.
+ * <ul>
+ * <li>{@link #REFLECTIVE} writes the fields one by one through their cached {@link FieldAccessor}s.</li>
+ * <li>{@link #GENERATED} generates one composite method handle per class which performs all the field stores of the
+ * class in a single call, so the JIT compiler can compile an injection into straight-line code.</li>
+ * </ul>
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class InjectionEngines {
+
+    public static final InjectionEngine REFLECTIVE = new ReflectiveInjectionEngine();
+    public static final InjectionEngine GENERATED = new GeneratedInjectionEngine();
+
+    private static volatile InjectionEngine defaultEngine = REFLECTIVE;
+
+    /**
+     * Returns the engine used by the {@link MockInjector}s which were created without an explicit engine.
+     * <p>
+     * @return the default engine
+     */
+    public static InjectionEngine getDefaultEngine() {
+        return defaultEngine;
+    }
+
+    /**
+     * Replaces the default engine. Already created {@link MockInjector}s keep their engine.
+     * <p>
+     * @param engine the new default engine
+     */
+    public static void setDefaultEngine(InjectionEngine engine) {
+        assertNotNull(engine, "Injection engine cannot be null!");
+        defaultEngine = engine;
+    }
+
+    private static class ReflectiveInjectionEngine implements InjectionEngine {
+
+        @Override
+        public ClassInjector injectorFor(Class<?> type) {
+            return new ReflectiveClassInjector(ClassMetadata.forClass(type).getWritableFields());
+        }
+    }
+
+    private static class ReflectiveClassInjector implements ClassInjector {
+
+        private final List<FieldMetadata> fields;
+
+        ReflectiveClassInjector(List<FieldMetadata> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public void inject(Object target, Object[] resolvedMocks) throws UnableToWriteFieldException {
+            for (int i = 0; i < resolvedMocks.length; i++) {
+                Object mock = resolvedMocks[i];
+                if (mock != null) {
+                    fields.get(i).getAccessor().set(target, mock);
+                }
+            }
+        }
+    }
+
+    private static class GeneratedInjectionEngine implements InjectionEngine {
+
+        private final ClassValue<ClassInjector> injectors = new ClassValue<ClassInjector>() {
+
+            @Override
+            protected ClassInjector computeValue(Class<?> type) {
+                return new GeneratedClassInjector(type, new InjectorGenerator(type).generate());
+            }
+        };
+
+        @Override
+        public ClassInjector injectorFor(Class<?> type) {
+            return injectors.get(type);
+        }
+    }
+
+    private static class GeneratedClassInjector implements ClassInjector {
+
+        private final Class<?> type;
+        private final MethodHandle injector;
+
+        GeneratedClassInjector(Class<?> type, MethodHandle injector) {
+            this.type = type;
+            this.injector = injector;
+        }
+
+        @Override
+        public void inject(Object target, Object[] resolvedMocks) throws UnableToWriteFieldException {
+            try {
+                injector.invokeExact(target, resolvedMocks);
+            } catch (Error error) {
+                throw error;
+            } catch (Throwable ex) {
+                /* The writes are idempotent: the reflective injector completes them or reports the failing field */
+                REFLECTIVE.injectorFor(type).inject(target, resolvedMocks);
+            }
+        }
+    }
+
+    /**
+     * Generates a method handle of type {@code (Object, Object[])void} which stores the non-null array elements into
+     * the writable fields of a class.
+     */
+    private static class InjectorGenerator {
+
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+        private static final MethodType INJECTOR_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+        private static final MethodHandle ELEMENT_GETTER = MethodHandles.arrayElementGetter(Object[].class);
+        private static final MethodHandle NON_NULL = findStatic(Objects.class, "nonNull",
+                MethodType.methodType(boolean.class, Object.class));
+        private static final MethodHandle SKIP = findStatic(InjectorGenerator.class, "skip", SETTER_TYPE);
+        private static final MethodHandle SKIP_ALL = findStatic(InjectorGenerator.class, "skip", INJECTOR_TYPE);
+        private static final MethodHandle ACCESSOR_SETTER = findSetterOfAccessor();
+
+        private final List<FieldMetadata> fields;
+
+        InjectorGenerator(Class<?> type) {
+            fields = ClassMetadata.forClass(type).getWritableFields();
+        }
+
+        MethodHandle generate() {
+            return generate(0, fields.size());
+        }
+
+        private MethodHandle generate(int from, int to) {
+            MethodHandle injector;
+            if (to - from == 0) {
+                injector = SKIP_ALL;
+            } else if (to - from == 1) {
+                injector = storeElement(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                injector = MethodHandles.foldArguments(generate(middle, to), generate(from, middle));
+            }
+            return injector;
+        }
+
+        private MethodHandle storeElement(int index) {
+            MethodHandle setter = setterOf(fields.get(index));
+            MethodHandle storeWhenNotNull = MethodHandles.guardWithTest(
+                    MethodHandles.dropArguments(NON_NULL, 0, Object.class), setter, SKIP);
+            MethodHandle element = MethodHandles.insertArguments(ELEMENT_GETTER, 1, index);
+            return MethodHandles.filterArguments(storeWhenNotNull, 1, element);
+        }
+
+        private MethodHandle setterOf(FieldMetadata metadata) {
+            MethodHandle setter;
+            try {
+                Field field = metadata.getAccessibleField();
+                setter = LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (Exception ex) {
+                setter = ACCESSOR_SETTER.bindTo(metadata.getAccessor());
+            }
+            return setter;
+        }
+
+        private static MethodHandle findSetterOfAccessor() {
+            try {
+                return LOOKUP.findVirtual(FieldAccessor.class, "set", SETTER_TYPE);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        private static MethodHandle findStatic(Class<?> owner, String name, MethodType type) {
+            try {
+                return LOOKUP.findStatic(owner, name, type);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        private static void skip(Object target, Object value) {
+        }
+
+        private static void skip(Object target, Object[] values) {
+        }
+    }
+
+    private InjectionEngines() {
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.mockannotations.selection.FusedMockSelector;
+
+/**
+ * The result of the mock selection of a class for a given structure of mocks: the position of the selected mock for
+ * every writable field of the class. Once compiled, a plan is replayed for every mock list with the same
+ * {@link MockSetFingerprint} without running the selectors again.
+ * <p>
+ * The plans of a class are cached up to {@link #MAX_PLANS_PER_CLASS}. When the cache of a class is full, a plan which
+ * has not been replayed since the last sweep is evicted (clock eviction), so the plans of new mock structures are
+ * cached as well.
+ * <p>
+ * @author Balazs Berkes
+ */
+final class InjectionPlan {
+
+    static final int NO_MOCK = FusedMockSelector.NO_MOCK;
+    static final int MAX_PLANS_PER_CLASS = 64;
+
+    private static final ClassValue<PlanCache> plans = new ClassValue<PlanCache>() {
+
+        @Override
+        protected PlanCache computeValue(Class<?> type) {
+            return new PlanCache();
+        }
+    };
+
+    private final int[] mockSlots;
+    private volatile boolean referenced = true;
+
+    /**
+     * Finds the plan compiled for the class and the mock structure.
+     * <p>
+     * @return the plan or {@code null} if it has not been compiled yet
+     */
+    static InjectionPlan find(Class<?> type, MockSetFingerprint fingerprint) {
+        return plans.get(type).get(fingerprint);
+    }
+
+    /**
+     * Stores the plan of the class and the mock structure. A plan of the class is evicted when the class has
+     * {@link #MAX_PLANS_PER_CLASS} plans already.
+     */
+    static void store(Class<?> type, MockSetFingerprint fingerprint, InjectionPlan plan) {
+        plans.get(type).put(fingerprint, plan);
+    }
+
+    InjectionPlan(int[] mockSlots) {
+        this.mockSlots = mockSlots;
+    }
+
+    /**
+     * Resolves the mocks of the writable fields from the given mock list.
+     * <p>
+     * @param mocks mock list with the fingerprint of the plan
+     * @return the mocks in the order of the writable fields
+     */
+    Object[] replay(List<MockHolder> mocks) {
+        Object[] resolvedMocks = new Object[mockSlots.length];
+        for (int i = 0; i < resolvedMocks.length; i++) {
+            int slot = mockSlots[i];
+            if (slot != NO_MOCK) {
+                resolvedMocks[i] = mocks.get(slot).getMock();
+            }
+        }
+        return resolvedMocks;
+    }
+
+    /**
+     * The plans of one class with clock eviction: a replay marks the plan as referenced, the sweep clears the marks
+     * and evicts the first plan which is not marked.
+     */
+    private static final class PlanCache {
+
+        private final ConcurrentMap<MockSetFingerprint, InjectionPlan> plans
+                = new ConcurrentHashMap<MockSetFingerprint, InjectionPlan>();
+
+        private InjectionPlan get(MockSetFingerprint fingerprint) {
+            InjectionPlan plan = plans.get(fingerprint);
+            if (notNull(plan) && !plan.referenced) {
+                plan.referenced = true;
+            }
+            return plan;
+        }
+
+        private void put(MockSetFingerprint fingerprint, InjectionPlan plan) {
+            if (!plans.containsKey(fingerprint)) {
+                while (plans.size() >= MAX_PLANS_PER_CLASS) {
+                    evictOne();
+                }
+                plans.putIfAbsent(fingerprint, plan);
+            }
+        }
+
+        private synchronized void evictOne() {
+            if (plans.size() < MAX_PLANS_PER_CLASS) {
+                return;
+            }
+            for (int sweep = 0; sweep < 2; sweep++) {
+                for (Iterator<InjectionPlan> it = plans.values().iterator(); it.hasNext();) {
+                    InjectionPlan plan = it.next();
+                    if (!plan.referenced) {
+                        it.remove();
+                        return;
+                    }
+                    plan.referenced = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+/**
+ * Determines how {@link ClassInitializer} creates the instances of a class.
+ * <p>
+ * @author Balazs Berkes
+ * @see ClassInitializer#setDefaultInstantiationMode(InstantiationMode)
+ * @see ClassInitializer#setInstantiationMode(Class, InstantiationMode)
+ */
+public enum InstantiationMode {
+
+    /**
+     * Invokes a constructor of the class with the mocks as arguments.
+     */
+    CONSTRUCTOR,
+    /**
+     * Allocates the instance without running any constructor of the class, the way deserialization does, then injects
+     * the mocks by {@link MockInjector}. The field initializers and the instance initializer blocks are skipped as
+     * well, so the fields without a mock keep the default values of the JVM: {@code null}, zero or {@code false}.
+     */
+    CONSTRUCTOR_FREE
+}
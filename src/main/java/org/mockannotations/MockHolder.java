@@ -15,28 +15,54 @@
  */
 package org.mockannotations;
 
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
 import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.function.Supplier;
 
-import org.mockannotations.utils.MockAnnotationReflectionUtils;
+import org.mockannotations.utils.CaseFolding;
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.GenericSignature;
+import org.mockannotations.utils.TypeIds;
+import org.mockannotations.utils.TypeIds.TypeId;
 
 /**
  * Wrapper class for a mock. It contains the name of mock, the source field and
  * the mock itself.
  * <p>
+ * A lazy holder (see {@link #lazy(Class, Field, String, Supplier)}) contains the declared type of the mock and a
+ * supplier instead of the mock. The mocks are selected by {@link #getMockType()}, so a lazy mock is created only when
+ * it is selected and {@link #getMock()} is called, and only once.
+ * <p>
+ * The setters make the holder a builder of its immutable form (see {@link #freeze()}). A mutable holder derives the
+ * selection keys on every read, the immutable holder computes them once when it is created: the type of the mock and
+ * its {@link TypeId}, the interned source name and its case folded form and the generic signature of the source field.
+ * <p>
  * @author Balazs Berkes
  */
 public class MockHolder {
 
-    private static final MockHolder EMPTY_MOCKHOLDER = new MockHolder();
+    private static final MockHolder EMPTY_MOCKHOLDER = new MockHolder().freeze();
 
     private Field sourceField;
     private Object mock;
+    private LazyMock lazyMock;
     private String name;
 
+    public MockHolder() {
+    }
+
+    private MockHolder(MockHolder holder) {
+        this.sourceField = holder.sourceField;
+        this.mock = holder.mock;
+        this.lazyMock = holder.lazyMock;
+        this.name = holder.getName();
+    }
+
     public static MockHolder emptyMock() {
         return EMPTY_MOCKHOLDER;
     }
@@ -49,6 +75,50 @@ public class MockHolder {
         return mockHolder;
     }
 
+    /**
+     * Creates a holder of a mock which is created on the first {@link #getMock()} call. Copies of the holder share
+     * the created mock.
+     * <p>
+     * @param type the declared type of the mock, the supplied mock must be an instance of it
+     * @param source the source field of the mock
+     * @param name the name of the mock
+     * @param supplier creates the mock, it is called at most once
+     * @return new lazy holder
+     */
+    public static MockHolder lazy(Class<?> type, Field source, String name, Supplier<?> supplier) {
+        assertNotNull(type, "Type of the mock cannot be null!");
+        assertNotNull(supplier, "Supplier of the mock cannot be null!");
+        MockHolder mockHolder = new MockHolder();
+        mockHolder.lazyMock = new LazyMock(type, supplier);
+        mockHolder.setSourceField(source);
+        mockHolder.setName(name);
+        return mockHolder;
+    }
+
+    /**
+     * Creates a copy of the holder. The copy of a lazy holder shares the mock with the original one.
+     * <p>
+     * @return new holder
+     */
+    public MockHolder copy() {
+        MockHolder copy = new MockHolder();
+        copy.mock = mock;
+        copy.lazyMock = lazyMock;
+        copy.setSourceField(sourceField);
+        copy.setName(name);
+        return copy;
+    }
+
+    /**
+     * Creates the immutable form of the holder. The setters of the immutable holder throw
+     * {@link UnsupportedOperationException}, it shares the mock of a lazy holder with the original one.
+     * <p>
+     * @return new immutable holder, or this holder if it is already immutable
+     */
+    public MockHolder freeze() {
+        return new ImmutableMockHolder(this);
+    }
+
     public void setSourceField(Field sourceField) {
         this.sourceField = sourceField;
     }
@@ -61,12 +131,58 @@ public class MockHolder {
         return isNull(sourceField) ? "" : sourceField.getName();
     }
 
+    /**
+     * Returns the source name folded by {@link CaseFolding}.
+     * <p>
+     * @return the folded source name
+     */
+    public String getFoldedSourceName() {
+        return CaseFolding.fold(getSourceName());
+    }
+
     public void setMock(Object mock) {
         this.mock = mock;
+        this.lazyMock = null;
     }
 
+    /**
+     * Returns the mock. The mock of a lazy holder is created by this call if it has not been created yet.
+     * <p>
+     * @return the mock
+     */
     public Object getMock() {
-        return mock;
+        return isNull(lazyMock) ? mock : lazyMock.get();
+    }
+
+    /**
+     * Returns the type the mock is selected by: the declared type of a lazy mock or the class of the mock. It never
+     * creates a lazy mock.
+     * <p>
+     * @return the type of the mock or {@code null} if there is no mock
+     */
+    public Class<?> getMockType() {
+        if (notNull(lazyMock)) {
+            return lazyMock.type;
+        }
+        return isNull(mock) ? null : mock.getClass();
+    }
+
+    /**
+     * Returns the id of the type the mock is selected by.
+     * <p>
+     * @return the id of {@link #getMockType()} or {@code null} if there is no mock
+     */
+    public TypeId getTypeId() {
+        return TypeIds.of(getMockType());
+    }
+
+    /**
+     * Determines whether the mock is available without calling a supplier.
+     * <p>
+     * @return {@code false} if the holder is lazy and its mock has not been created yet
+     */
+    public boolean isMaterialized() {
+        return isNull(lazyMock) || lazyMock.isCreated();
     }
 
     public void setName(String name) {
@@ -77,12 +193,144 @@ public class MockHolder {
         return isNull(name) ? "" : name;
     }
 
+    /**
+     * Returns the generic parameters of the source field.
+     * <p>
+     * @return unmodifiable {@code List<Type>} of the generic parameters
+     */
     public List<Type> getGenericParameters() {
-        return MockAnnotationReflectionUtils.getGenericParameters(sourceField);
+        return getGenericSignature().getParameters();
+    }
+
+    /**
+     * Returns the interned generic signature of the source field. The signature is resolved once per source field, a
+     * mock without source field has no generic parameters.
+     * <p>
+     * @return the signature of the source field
+     */
+    public GenericSignature getGenericSignature() {
+        return isNull(sourceField) ? GenericSignature.NONE : ClassMetadata.forField(sourceField).getGenericSignature();
     }
 
     @Override
     public String toString() {
-        return "MockHolder{" + "sourceField=" + getSourceName() + ", mock=" + mock + ", name=" + name + '}';
+        Object shownMock = isMaterialized() ? getMock() : "<lazy " + getMockType().getName() + ">";
+        return "MockHolder{" + "sourceField=" + getSourceName() + ", mock=" + shownMock + ", name=" + getName() + '}';
+    }
+
+    /**
+     * Immutable holder with the selection keys computed when it is created.
+     */
+    private static final class ImmutableMockHolder extends MockHolder {
+
+        private final Class<?> mockType;
+        private final TypeId typeId;
+        private final String sourceName;
+        private final String foldedSourceName;
+        private final GenericSignature genericSignature;
+
+        private ImmutableMockHolder(MockHolder holder) {
+            super(holder);
+            this.mockType = holder.getMockType();
+            this.typeId = TypeIds.of(mockType);
+            this.sourceName = holder.getSourceName().intern();
+            this.foldedSourceName = CaseFolding.fold(sourceName).intern();
+            this.genericSignature = holder.getGenericSignature();
+        }
+
+        @Override
+        public Class<?> getMockType() {
+            return mockType;
+        }
+
+        @Override
+        public TypeId getTypeId() {
+            return typeId;
+        }
+
+        @Override
+        public String getSourceName() {
+            return sourceName;
+        }
+
+        @Override
+        public String getFoldedSourceName() {
+            return foldedSourceName;
+        }
+
+        @Override
+        public String getName() {
+            return ((MockHolder) this).name;
+        }
+
+        @Override
+        public GenericSignature getGenericSignature() {
+            return genericSignature;
+        }
+
+        @Override
+        public MockHolder copy() {
+            return this;
+        }
+
+        @Override
+        public MockHolder freeze() {
+            return this;
+        }
+
+        @Override
+        public void setSourceField(Field sourceField) {
+            throw new UnsupportedOperationException("Immutable mock holder!");
+        }
+
+        @Override
+        public void setMock(Object mock) {
+            throw new UnsupportedOperationException("Immutable mock holder!");
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException("Immutable mock holder!");
+        }
+    }
+
+    /**
+     * Mock created on demand. It is shared by the copies of a lazy holder.
+     */
+    private static final class LazyMock {
+
+        private final Class<?> type;
+        private Supplier<?> supplier;
+        private volatile Object instance;
+        private volatile boolean created;
+
+        private LazyMock(Class<?> type, Supplier<?> supplier) {
+            this.type = type;
+            this.supplier = supplier;
+        }
+
+        private boolean isCreated() {
+            return created;
+        }
+
+        private Object get() {
+            if (!created) {
+                create();
+            }
+            return instance;
+        }
+
+        private synchronized void create() {
+            if (!created) {
+                Object supplied = supplier.get();
+                if (notNull(supplied) && !type.isInstance(supplied)) {
+                    throw new IllegalStateException("Supplied mock " + supplied + " is not an instance of "
+                            + type.getName() + "!");
+                }
+                instance = supplied;
+                created = true;
+                supplier = null;
+            }
+        }
     }
 }
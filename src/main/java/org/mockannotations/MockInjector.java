@@ -15,39 +15,133 @@
  */
 package org.mockannotations;
 
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.getAllDeclaredFields;
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.setField;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
-import org.mockannotations.selection.ByGenericSelector;
 import org.mockannotations.selection.ByNameSelector;
-import org.mockannotations.selection.ByTypeSelector;
-import org.mockannotations.selection.MockSelector;
+import org.mockannotations.selection.FusedMockSelector;
+import org.mockannotations.selection.MockIndex;
+import org.mockannotations.selection.SelectionStrategies;
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
 
 /**
- * Injects the the given mocks into the target class. Mocks are injected by type and name.
+ * Injects the the given mocks into the target class. Mocks are injected by type and name, the mocks of the fields
+ * are selected by the {@link FusedMockSelector}.
+ * <p>
+ * The mock selection of a class is compiled into an {@link InjectionPlan} which is replayed for every later injection
+ * of the same class with a structurally identical mock list. The fields are written by the {@link GeneratedInjector}
+ * of the target class when one is available, otherwise by the default {@link InjectionEngine}. An injector created
+ * with an explicit engine writes every field by that engine, regardless of the generated injectors.
+ * <p>
+ * The injector is thread-safe and it can be shared. The mocks are copied into an immutable snapshot when the injector
+ * is created, later changes of the given list or holders are not seen by the injector. The caches of the plans and
+ * of the reflection metadata are safe for concurrent use. The writes of {@link #injectTo(Object)} happen-before its
+ * return in the calling thread, other threads see the injected values once the target is safely published to them;
+ * {@link #injectAll(Collection, Executor)} gives the same guarantee for the targets injected by its tasks.
+ * <p>
+ * An injector of a {@link MockRegistry} injects the mocks of the current snapshot of the registry. Its plans are
+ * versioned: after a change of the registry only the plans of the classes with a field of an affected type are
+ * compiled again.
  *
  * @author Balazs Berkes
  */
 public class MockInjector {
 
-    private static List<MockSelector<?>> selectors = initializeSelectors();
+    private final MockSnapshot mocks;
+    private final MockRegistry registry;
+    private final ConcurrentMap<Class<?>, VersionedPlan> versionedPlans
+            = new ConcurrentHashMap<Class<?>, VersionedPlan>();
+    private final InjectionEngine engine;
+    private final boolean generatedInjectorsPreferred;
+    private final FusedMockSelector selector;
 
-    private static List<MockSelector<?>> initializeSelectors() {
-        List<MockSelector<?>> selectorChain = new ArrayList<MockSelector<?>>();
-        selectorChain.add(ByTypeSelector.getSingleton());
-        selectorChain.add(ByGenericSelector.getSingleton());
-        selectorChain.add(ByNameSelector.getSingleton());
-        return selectorChain;
+    public MockInjector(List<MockHolder> mocks) {
+        this(mocks, InjectionEngines.getDefaultEngine(), FusedMockSelector.getSingleton(), true);
     }
 
-    private List<MockHolder> mocks;
+    /**
+     * Creates an injector which selects the mocks by name with the given strategies instead of the global strategies
+     * of {@link ByNameSelector}.
+     * <p>
+     * @param mocks the mocks to inject, copied when the injector is created
+     * @param strategies the name selection strategies of the injector
+     */
+    public MockInjector(List<MockHolder> mocks, SelectionStrategies strategies) {
+        this(mocks, InjectionEngines.getDefaultEngine(), new FusedMockSelector(strategies), true);
+    }
 
-    public MockInjector(List<MockHolder> mocks) {
-        this.mocks = mocks;
+    /**
+     * Creates an injector which writes the selected mocks by the given engine, even when the target class has a
+     * {@link GeneratedInjector}.
+     * <p>
+     * @param mocks the mocks to inject, copied when the injector is created
+     * @param engine the backend which writes the fields
+     * @see InjectionEngines
+     */
+    public MockInjector(List<MockHolder> mocks, InjectionEngine engine) {
+        this(mocks, engine, FusedMockSelector.getSingleton(), false);
+    }
+
+    /**
+     * Creates an injector which writes the selected mocks by the given engine, even when the target class has a
+     * {@link GeneratedInjector}, and selects the mocks by name with the given strategies.
+     * <p>
+     * @param mocks the mocks to inject, copied when the injector is created
+     * @param engine the backend which writes the fields
+     * @param strategies the name selection strategies of the injector
+     */
+    public MockInjector(List<MockHolder> mocks, InjectionEngine engine, SelectionStrategies strategies) {
+        this(mocks, engine, new FusedMockSelector(strategies), false);
+    }
+
+    /**
+     * Creates an injector which injects the current mocks of the given registry.
+     * <p>
+     * @param registry the registry of the mocks
+     */
+    public MockInjector(MockRegistry registry) {
+        this(registry, InjectionEngines.getDefaultEngine(), true);
+    }
+
+    /**
+     * Creates an injector which injects the current mocks of the given registry by the given engine, even when the
+     * target class has a {@link GeneratedInjector}.
+     * <p>
+     * @param registry the registry of the mocks
+     * @param engine the backend which writes the fields
+     */
+    public MockInjector(MockRegistry registry, InjectionEngine engine) {
+        this(registry, engine, false);
+    }
+
+    private MockInjector(MockRegistry registry, InjectionEngine engine, boolean generatedInjectorsPreferred) {
+        assertNotNull(registry, "Registry cannot be null!");
+        assertNotNull(engine, "Injection engine cannot be null!");
+        this.selector = FusedMockSelector.getSingleton();
+        this.mocks = null;
+        this.registry = registry;
+        this.engine = engine;
+        this.generatedInjectorsPreferred = generatedInjectorsPreferred;
+    }
+
+    private MockInjector(List<MockHolder> mocks, InjectionEngine engine, FusedMockSelector selector,
+            boolean generatedInjectorsPreferred) {
+        assertNotNull(engine, "Injection engine cannot be null!");
+        this.selector = selector;
+        this.mocks = MockSnapshot.of(mocks, selector.getStrategies());
+        this.registry = null;
+        this.engine = engine;
+        this.generatedInjectorsPreferred = generatedInjectorsPreferred;
     }
 
     /**
@@ -57,27 +151,162 @@ public class MockInjector {
      * @return the target object
      */
     public Object injectTo(Object target) {
-        for (Field field : getAllDeclaredFields(target.getClass())) {
-            injectField(field, target);
-        }
+        Class<?> type = target.getClass();
+        Object[] resolvedMocks = resolveMocks(type);
+        classInjectorOf(type).inject(target, resolvedMocks);
         return target;
     }
 
-    private void injectField(Field field, Object target) {
-        List<MockHolder> selectedMocks = mocks;
-        for (MockSelector<?> selector : selectors) {
-            selectedMocks = selector.selectByField(field, selectedMocks);
+    /**
+     * Injects the previously given mocks into every target using the common {@link ForkJoinPool}.
+     * <p>
+     * @param targets objects to be injected
+     * @return the targets
+     * @see #injectAll(Collection, Executor)
+     */
+    public <T> Collection<T> injectAll(Collection<T> targets) {
+        return injectAll(targets, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Injects the previously given mocks into every target. The targets are grouped by their class, the mocks are
+     * selected once per class and the fields are written by tasks running on the given executor. Tasks rejected by
+     * the executor run on the calling thread.
+     * <p>
+     * The method returns when every target has been injected: all the injected field values are visible to the
+     * calling thread (and to the threads it later hands the targets to) after the return. If any injection fails, the
+     * first failure is rethrown after the remaining tasks have finished.
+     * <p>
+     * The calling thread is never blocked if it is a worker of a {@link ForkJoinPool}: a worker of the given pool forks
+     * the tasks into the pool and helps running them while it waits, a worker of any other pool ignores the given
+     * executor and runs the tasks itself, one after the other.
+     * <p>
+     * @param targets objects to be injected
+     * @param executor executor running the injection tasks
+     * @return the targets
+     */
+    public <T> Collection<T> injectAll(Collection<T> targets, Executor executor) {
+        assertNotNull(executor, "Executor cannot be null!");
+        Map<Class<?>, List<T>> targetsByClass = BatchInjection.groupByClass(targets);
+        int chunkSize = BatchInjection.chunkSizeOf(targets.size());
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (Map.Entry<Class<?>, List<T>> group : targetsByClass.entrySet()) {
+            Class<?> type = group.getKey();
+            Object[] resolvedMocks = resolveMocks(type);
+            ClassInjector injector = classInjectorOf(type);
+            List<T> groupTargets = group.getValue();
+            for (int from = 0; from < groupTargets.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, groupTargets.size());
+                tasks.add(new InjectionTask(injector, resolvedMocks, groupTargets.subList(from, to)));
+            }
+        }
+        BatchInjection.runAll(tasks, executor);
+        return targets;
+    }
+
+    private ClassInjector classInjectorOf(Class<?> type) {
+        return generatedInjectorsPreferred ? GeneratedInjectors.classInjectorFor(type, engine)
+                : engine.injectorFor(type);
+    }
+
+    private Object[] resolveMocks(Class<?> type) {
+        return isNull(registry) ? planOf(type).replay(mocks.getMocks()) : versionedPlanOf(type).replay();
+    }
+
+    private VersionedPlan versionedPlanOf(Class<?> type) {
+        MockRegistry.Snapshot current = registry.getSnapshot();
+        SelectionStrategies strategies = selector.getStrategies();
+        VersionedPlan plan = versionedPlans.get(type);
+        if (isNull(plan) || !plan.strategies.equals(strategies)
+                || !current.isUnchangedSince(plan.validVersion, plan.fieldTypes)) {
+            plan = compileVersionedPlan(type, current, strategies);
+            versionedPlans.put(type, plan);
+        } else if (plan.validVersion < current.getVersion()) {
+            plan = plan.validAt(current.getVersion());
+            versionedPlans.put(type, plan);
+        }
+        return plan;
+    }
+
+    private VersionedPlan compileVersionedPlan(Class<?> type, MockRegistry.Snapshot snapshot,
+            SelectionStrategies strategies) {
+        List<FieldMetadata> fields = ClassMetadata.forClass(type).getWritableFields();
+        Class<?>[] fieldTypes = new Class<?>[fields.size()];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            fieldTypes[i] = fields.get(i).getField().getType();
+        }
+        InjectionPlan plan = compilePlan(type, snapshot.getIndex());
+        return new VersionedPlan(plan, snapshot.getMocks(), strategies, fieldTypes, snapshot.getVersion());
+    }
+
+    private InjectionPlan planOf(Class<?> type) {
+        MockSetFingerprint fingerprint = mocks.getFingerprint(selector.getStrategies());
+        InjectionPlan plan = InjectionPlan.find(type, fingerprint);
+        if (isNull(plan)) {
+            plan = compilePlan(type, mocks.getIndex());
+            InjectionPlan.store(type, fingerprint, plan);
         }
-        injectToFieldWhenSelected(selectedMocks, field, target);
+        return plan;
     }
 
-    private void injectToFieldWhenSelected(List<MockHolder> matchingMocks, Field field, Object target) {
-        if (notEmpty(matchingMocks)) {
-            setField(field, target, matchingMocks.get(0).getMock());
+    private InjectionPlan compilePlan(Class<?> type, MockIndex index) {
+        List<FieldMetadata> fields = ClassMetadata.forClass(type).getWritableFields();
+        int[] mockSlots = new int[fields.size()];
+        for (int i = 0; i < mockSlots.length; i++) {
+            FieldMetadata field = fields.get(i);
+            mockSlots[i] = selector.selectSlot(field.getField().getType(), field.getGenericSignature(),
+                    field.getField().getName(), index);
         }
+        return new InjectionPlan(mockSlots);
     }
 
-    private boolean notEmpty(List<?> list) {
-        return !list.isEmpty();
+    /**
+     * Plan of a class compiled from a snapshot of the registry. It stays valid for the later snapshots as long as the
+     * changes of the registry do not affect the types of the fields.
+     */
+    private static final class VersionedPlan {
+
+        private final InjectionPlan plan;
+        private final List<MockHolder> compiledMocks;
+        private final SelectionStrategies strategies;
+        private final Class<?>[] fieldTypes;
+        private final long validVersion;
+
+        VersionedPlan(InjectionPlan plan, List<MockHolder> compiledMocks, SelectionStrategies strategies,
+                Class<?>[] fieldTypes, long validVersion) {
+            this.plan = plan;
+            this.compiledMocks = compiledMocks;
+            this.strategies = strategies;
+            this.fieldTypes = fieldTypes;
+            this.validVersion = validVersion;
+        }
+
+        VersionedPlan validAt(long version) {
+            return new VersionedPlan(plan, compiledMocks, strategies, fieldTypes, version);
+        }
+
+        Object[] replay() {
+            return plan.replay(compiledMocks);
+        }
+    }
+
+    private static class InjectionTask implements Runnable {
+
+        private final ClassInjector injector;
+        private final Object[] resolvedMocks;
+        private final List<?> targets;
+
+        InjectionTask(ClassInjector injector, Object[] resolvedMocks, List<?> targets) {
+            this.injector = injector;
+            this.resolvedMocks = resolvedMocks;
+            this.targets = targets;
+        }
+
+        @Override
+        public void run() {
+            for (Object target : targets) {
+                injector.inject(target, resolvedMocks);
+            }
+        }
     }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mockannotations.selection.MockIndex;
+import org.mockannotations.utils.InheritanceDistances;
+
+/**
+ * Mutable registry of mocks which publishes immutable, versioned snapshots. Every change (add, remove or replace)
+ * creates a new {@link Snapshot} by copy-on-write, the snapshots already handed out are never changed.
+ * <p>
+ * A snapshot remembers the version of the last change of every type: a change affects the supertypes (including the
+ * interfaces) of the types of the added and removed mocks. The index of a new snapshot is derived from the previous
+ * one and the {@link MockInjector injectors} of the registry recompile only the plans of the classes with a field of
+ * an affected type.
+ * <p>
+ * The registry is thread-safe: the changes are serialized, the snapshots can be read by any number of threads.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class MockRegistry {
+
+    private final List<MockHolder> registeredMocks = new ArrayList<MockHolder>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Creates an empty registry.
+     */
+    public MockRegistry() {
+    }
+
+    /**
+     * Creates a registry of the given mocks.
+     * <p>
+     * @param mocks the initial mocks
+     */
+    public MockRegistry(List<MockHolder> mocks) {
+        assertNotNull(mocks, "Mocks cannot be null!");
+        for (MockHolder mock : mocks) {
+            add(mock);
+        }
+    }
+
+    /**
+     * Returns the current snapshot of the mocks.
+     * <p>
+     * @return the immutable snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the version of the current snapshot. The version is incremented by every change.
+     * <p>
+     * @return the current version
+     */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * Adds a mock to the end of the registry. The registry holds the frozen form of the holder, see
+     * {@link MockHolder#freeze()}.
+     * <p>
+     * @param mock the mock to add
+     * @return the registered, frozen holder
+     */
+    public synchronized MockHolder add(MockHolder mock) {
+        assertNotNull(mock, "Mock cannot be null!");
+        MockHolder frozen = mock.freeze();
+        List<MockHolder> mocks = new ArrayList<MockHolder>(snapshot.getMocks());
+        mocks.add(frozen);
+        registeredMocks.add(mock);
+        publish(mocks, frozen);
+        return frozen;
+    }
+
+    /**
+     * Removes a mock from the registry.
+     * <p>
+     * @param mock the added holder or the registered holder returned by {@link #add(MockHolder)}
+     * @return {@code true} if the mock was registered
+     */
+    public synchronized boolean remove(MockHolder mock) {
+        int position = positionOf(mock);
+        if (position == Snapshot.NOT_REGISTERED) {
+            return false;
+        }
+        List<MockHolder> mocks = new ArrayList<MockHolder>(snapshot.getMocks());
+        MockHolder removed = mocks.remove(position);
+        registeredMocks.remove(position);
+        publish(mocks, removed);
+        return true;
+    }
+
+    /**
+     * Replaces a mock of the registry with another one at the same position.
+     * <p>
+     * @param mock the added holder or the registered holder returned by {@link #add(MockHolder)}
+     * @param replacement the new mock
+     * @return the registered, frozen replacement or {@code null} if the mock was not registered
+     */
+    public synchronized MockHolder replace(MockHolder mock, MockHolder replacement) {
+        assertNotNull(replacement, "Mock cannot be null!");
+        int position = positionOf(mock);
+        if (position == Snapshot.NOT_REGISTERED) {
+            return null;
+        }
+        MockHolder frozen = replacement.freeze();
+        List<MockHolder> mocks = new ArrayList<MockHolder>(snapshot.getMocks());
+        MockHolder replaced = mocks.set(position, frozen);
+        registeredMocks.set(position, replacement);
+        publish(mocks, replaced, frozen);
+        return frozen;
+    }
+
+    private int positionOf(MockHolder mock) {
+        List<MockHolder> mocks = snapshot.getMocks();
+        for (int position = 0; position < mocks.size(); position++) {
+            if (mocks.get(position) == mock || registeredMocks.get(position) == mock) {
+                return position;
+            }
+        }
+        return Snapshot.NOT_REGISTERED;
+    }
+
+    private void publish(List<MockHolder> mocks, MockHolder... changedMocks) {
+        snapshot = snapshot.change(mocks, changedMocks);
+    }
+
+    /**
+     * Immutable, versioned state of a {@link MockRegistry}.
+     */
+    public static final class Snapshot {
+
+        private static final int NOT_REGISTERED = -1;
+        private static final long NEVER_CHANGED = 0;
+        private static final Snapshot EMPTY = new Snapshot(NEVER_CHANGED,
+                MockIndex.of(Collections.<MockHolder>emptyList()), Collections.<Class<?>, Long>emptyMap(),
+                NEVER_CHANGED);
+
+        private final long version;
+        private final MockIndex index;
+        private final Map<Class<?>, Long> changeVersions;
+        private final long unrankedChangeVersion;
+
+        private Snapshot(long version, MockIndex index, Map<Class<?>, Long> changeVersions,
+                long unrankedChangeVersion) {
+            this.version = version;
+            this.index = index;
+            this.changeVersions = changeVersions;
+            this.unrankedChangeVersion = unrankedChangeVersion;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the frozen mocks of the snapshot.
+         * <p>
+         * @return unmodifiable {@code List<MockHolder>} in the order of registration
+         */
+        public List<MockHolder> getMocks() {
+            return index.getMocks();
+        }
+
+        public MockIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * Determines whether the mocks which can be injected into the given types are the same in this snapshot as in
+         * the snapshot of the given version.
+         * <p>
+         * @param earlierVersion version of an earlier snapshot of the same registry
+         * @param types the types to check
+         * @return {@code true} if none of the changes since the given version affected the types
+         */
+        boolean isUnchangedSince(long earlierVersion, Class<?>[] types) {
+            if (unrankedChangeVersion > earlierVersion) {
+                return false;
+            }
+            for (Class<?> type : types) {
+                Long changeVersion = changeVersions.get(type);
+                if (notNull(changeVersion) && changeVersion > earlierVersion) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Snapshot change(List<MockHolder> mocks, MockHolder... changedMocks) {
+            long newVersion = version + 1;
+            long newUnrankedChangeVersion = unrankedChangeVersion;
+            Set<Class<?>> affectedTypes = new HashSet<Class<?>>();
+            for (MockHolder changed : changedMocks) {
+                Class<?> mockType = changed.getMockType();
+                if (isNull(mockType)) {
+                    continue;
+                }
+                if (mockType.isArray()) {
+                    newUnrankedChangeVersion = newVersion;
+                } else {
+                    affectedTypes.addAll(InheritanceDistances.ranksOf(mockType).keySet());
+                    affectedTypes.add(Object.class);
+                }
+            }
+            Map<Class<?>, Long> newChangeVersions = new HashMap<Class<?>, Long>(changeVersions);
+            for (Class<?> type : affectedTypes) {
+                newChangeVersions.put(type, newVersion);
+            }
+            return new Snapshot(newVersion, index.update(mocks, affectedTypes),
+                    Collections.unmodifiableMap(newChangeVersions), newUnrankedChangeVersion);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mockannotations.selection.SelectionStrategies;
+import org.mockannotations.utils.TypeIds;
+import org.mockannotations.utils.TypeIds.TypeId;
+
+/**
+ * Structural identity of a list of mocks. The mock selection depends only on the runtime class and the source field
+ * of the mocks and on the name selection strategies, so two mock lists with equal fingerprints select the mocks of
+ * the same positions for every field.
+ * <p>
+ * The classes are kept as their {@link TypeId}s and the source fields as the id of their declaring class and their
+ * name, so a cached fingerprint pins neither the mock classes nor the classes of the source fields. The fingerprint
+ * holds the ids themselves, so their values are not reclaimed for other classes while it is cached.
+ * <p>
+ * @author Balazs Berkes
+ */
+final class MockSetFingerprint {
+
+    private final TypeId[] mockTypeIds;
+    private final TypeId[] sourceClassIds;
+    private final String[] sourceNames;
+    private final SelectionStrategies strategies;
+    private final int hash;
+
+    static MockSetFingerprint of(List<MockHolder> mocks, SelectionStrategies strategies) {
+        TypeId[] mockTypeIds = new TypeId[mocks.size()];
+        TypeId[] sourceClassIds = new TypeId[mocks.size()];
+        String[] sourceNames = new String[mocks.size()];
+        for (int i = 0; i < mockTypeIds.length; i++) {
+            MockHolder mock = mocks.get(i);
+            Field sourceField = mock.getSourceField();
+            mockTypeIds[i] = mock.getTypeId();
+            sourceClassIds[i] = isNull(sourceField) ? null : TypeIds.of(sourceField.getDeclaringClass());
+            sourceNames[i] = isNull(sourceField) ? null : sourceField.getName();
+        }
+        return new MockSetFingerprint(mockTypeIds, sourceClassIds, sourceNames, strategies);
+    }
+
+    /**
+     * Returns the fingerprint of the same mocks with the given name selection strategies.
+     */
+    MockSetFingerprint withStrategies(SelectionStrategies currentStrategies) {
+        return strategies == currentStrategies ? this
+                : new MockSetFingerprint(mockTypeIds, sourceClassIds, sourceNames, currentStrategies);
+    }
+
+    private MockSetFingerprint(TypeId[] mockTypeIds, TypeId[] sourceClassIds, String[] sourceNames,
+            SelectionStrategies strategies) {
+        this.mockTypeIds = mockTypeIds;
+        this.sourceClassIds = sourceClassIds;
+        this.sourceNames = sourceNames;
+        this.strategies = strategies;
+        this.hash = 31 * (31 * (31 * Arrays.hashCode(mockTypeIds) + Arrays.hashCode(sourceClassIds))
+                + Arrays.hashCode(sourceNames)) + strategies.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        boolean equals = this == obj;
+        if (!equals && obj instanceof MockSetFingerprint) {
+            MockSetFingerprint other = (MockSetFingerprint) obj;
+            equals = hash == other.hash && Arrays.equals(mockTypeIds, other.mockTypeIds)
+                    && Arrays.equals(sourceClassIds, other.sourceClassIds)
+                    && Arrays.equals(sourceNames, other.sourceNames) && strategies.equals(other.strategies);
+        }
+        return equals;
+    }
+}
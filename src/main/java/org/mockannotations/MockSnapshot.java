@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockannotations.selection.MockIndex;
+import org.mockannotations.selection.SelectionStrategies;
+
+/**
+ * Immutable snapshot of the mocks of an injector. The mock holders are frozen when the snapshot is taken, so later
+ * changes of the original list or of the original holders do not affect the injector. The snapshot is indexed and
+ * fingerprinted once, and it can be read by any number of threads.
+ * <p>
+ * @author Balazs Berkes
+ */
+final class MockSnapshot {
+
+    private final MockIndex index;
+    private volatile MockSetFingerprint fingerprint;
+
+    static MockSnapshot of(List<MockHolder> mocks, SelectionStrategies strategies) {
+        assertNotNull(mocks, "Mocks cannot be null!");
+        List<MockHolder> copies = new ArrayList<MockHolder>(mocks.size());
+        for (MockHolder mock : mocks) {
+            copies.add(mock.freeze());
+        }
+        return new MockSnapshot(MockIndex.of(copies), strategies);
+    }
+
+    private MockSnapshot(MockIndex index, SelectionStrategies strategies) {
+        this.index = index;
+        this.fingerprint = MockSetFingerprint.of(index.getMocks(), strategies);
+    }
+
+    /**
+     * Returns the frozen mocks.
+     * <p>
+     * @return unmodifiable {@code List<MockHolder>} of the frozen holders
+     */
+    List<MockHolder> getMocks() {
+        return index.getMocks();
+    }
+
+    MockIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the fingerprint of the mocks with the given name selection strategies.
+     */
+    MockSetFingerprint getFingerprint(SelectionStrategies strategies) {
+        MockSetFingerprint current = fingerprint.withStrategies(strategies);
+        fingerprint = current;
+        return current;
+    }
+}
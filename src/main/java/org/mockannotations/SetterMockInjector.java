@@ -15,35 +15,69 @@
  */
 package org.mockannotations;
 
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.getAllSetters;
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.getGenericParameters;
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.setBySetter;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
-import org.mockannotations.selection.ByGenericSelector;
+import org.mockannotations.GeneratedInjectors.GeneratedBinding;
 import org.mockannotations.selection.ByNameSelector;
-import org.mockannotations.selection.ByTypeSelector;
-import org.mockannotations.selection.MockSelector;
+import org.mockannotations.selection.FusedMockSelector;
+import org.mockannotations.selection.SelectionStrategies;
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToInvokeSetterException;
+import org.mockannotations.utils.SetterDescriptor;
 
 /**
- * Injects the the given mocks into the target class using it's setters. Mocks are injected by type and name.
+ * Injects the the given mocks into the target class using it's setters. Mocks are injected by type and name. The
+ * setters are invoked by the {@link GeneratedInjector} of the target class when one is available.
+ * <p>
+ * The injector is thread-safe and it can be shared. The mocks are copied into an immutable snapshot when the injector
+ * is created and the selected mocks of the setters are cached per class in a concurrent map. The setter invocations
+ * of {@link #injectTo(Object)} happen-before its return in the calling thread, other threads see their effects once
+ * the target is safely published to them; {@link #injectAll(Collection, Executor)} gives the same guarantee for the
+ * targets injected by its tasks.
  * <p>
  * @author Balazs Berkes
  */
 public class SetterMockInjector {
 
-    private static final MockSelector<Class<?>> byTypeSelectior = ByTypeSelector.getSingleton();
-    private static final MockSelector<List<Type>> byGenericSelectior = ByGenericSelector.getSingleton();
-    private static final MockSelector<String> byNameSelectior = ByNameSelector.getSingleton();
-
-    private List<MockHolder> mocks;
+    private final FusedMockSelector selector;
+    private final MockSnapshot mocks;
+    private final ConcurrentMap<Class<?>, SetterInjection> injections
+            = new ConcurrentHashMap<Class<?>, SetterInjection>();
 
+    /**
+     * Creates an injector of the given mocks.
+     * <p>
+     * @param mocks the mocks to inject, copied when the injector is created
+     */
     public SetterMockInjector(List<MockHolder> mocks) {
-        this.mocks = mocks;
+        this(mocks, FusedMockSelector.getSingleton());
+    }
+
+    /**
+     * Creates an injector of the given mocks which selects the mocks by name with the given strategies instead of the
+     * global strategies of {@link ByNameSelector}.
+     * <p>
+     * @param mocks the mocks to inject, copied when the injector is created
+     * @param strategies the name selection strategies of the injector
+     */
+    public SetterMockInjector(List<MockHolder> mocks, SelectionStrategies strategies) {
+        this(mocks, new FusedMockSelector(strategies));
+    }
+
+    private SetterMockInjector(List<MockHolder> mocks, FusedMockSelector selector) {
+        this.selector = selector;
+        this.mocks = MockSnapshot.of(mocks, selector.getStrategies());
     }
 
     /**
@@ -53,41 +87,146 @@ public class SetterMockInjector {
      * @return the target object
      */
     public Object injectTo(Object target) {
-        for (Method method : getAllSetters(target.getClass())) {
-            injectViaSetter(method, target);
-        }
+        setterInjectionOf(target.getClass()).injectTo(target);
         return target;
     }
 
-    private void injectViaSetter(Method method, Object target) {
-        List<MockHolder> selectedMocks = mocks;
-        Parameter parameter = method.getParameters()[0];
-
-        selectedMocks = byTypeSelectior.select(parameter.getType(), selectedMocks);
+    /**
+     * Injects the previously given mocks into every target using the common {@link ForkJoinPool}.
+     * <p>
+     * @param targets objects to be injected
+     * @return the targets
+     * @see #injectAll(Collection, Executor)
+     */
+    public <T> Collection<T> injectAll(Collection<T> targets) {
+        return injectAll(targets, ForkJoinPool.commonPool());
+    }
 
-        selectedMocks = byGenericSelectior.select(getGenericParametersOf(parameter), selectedMocks);
+    /**
+     * Injects the previously given mocks into every target. The targets are grouped by their class, the mocks of the
+     * setters are selected once per class and the setters are invoked by tasks running on the given executor. Tasks
+     * rejected by the executor run on the calling thread.
+     * <p>
+     * The method returns when every target has been injected: all the effects of the setters are visible to the
+     * calling thread (and to the threads it later hands the targets to) after the return. If any injection fails, the
+     * first failure is rethrown after the remaining tasks have finished.
+     * <p>
+     * The calling thread is never blocked if it is a worker of a {@link ForkJoinPool}: a worker of the given pool forks
+     * the tasks into the pool and helps running them while it waits, a worker of any other pool ignores the given
+     * executor and runs the tasks itself, one after the other.
+     * <p>
+     * @param targets objects to be injected
+     * @param executor executor running the injection tasks
+     * @return the targets
+     */
+    public <T> Collection<T> injectAll(Collection<T> targets, Executor executor) {
+        assertNotNull(executor, "Executor cannot be null!");
+        Map<Class<?>, List<T>> targetsByClass = BatchInjection.groupByClass(targets);
+        int chunkSize = BatchInjection.chunkSizeOf(targets.size());
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (Map.Entry<Class<?>, List<T>> group : targetsByClass.entrySet()) {
+            SetterInjection injection = setterInjectionOf(group.getKey());
+            List<T> groupTargets = group.getValue();
+            for (int from = 0; from < groupTargets.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, groupTargets.size());
+                tasks.add(new InjectionTask(injection, groupTargets.subList(from, to)));
+            }
+        }
+        BatchInjection.runAll(tasks, executor);
+        return targets;
+    }
 
-        selectedMocks = byNameSelectior.select(getFieldNameOf(method.getName()), selectedMocks);
+    private SetterInjection setterInjectionOf(Class<?> type) {
+        SelectionStrategies strategies = selector.getStrategies();
+        SetterInjection injection = injections.get(type);
+        if (isNull(injection) || injection.strategies != strategies) {
+            injection = createSetterInjection(type, strategies);
+            injections.put(type, injection);
+        }
+        return injection;
+    }
 
-        injectToSetterWhenSelected(selectedMocks, method, target);
+    private SetterInjection createSetterInjection(Class<?> type, SelectionStrategies strategies) {
+        List<SetterDescriptor> setters = ClassMetadata.forClass(type).getSetters();
+        GeneratedBinding binding = GeneratedInjectors.bindingFor(type);
+        int[] generatedIndexes = new int[setters.size()];
+        Object[] selectedMocks = new Object[setters.size()];
+        for (int i = 0; i < setters.size(); i++) {
+            generatedIndexes[i] = generatedSetterIndex(binding, i);
+            selectedMocks[i] = selectMock(setters.get(i));
+        }
+        return new SetterInjection(strategies, setters, generatedIndexes, selectedMocks);
+    }
 
+    private int generatedSetterIndex(GeneratedBinding binding, int setterPosition) {
+        return binding.isPresent() ? binding.setterIndexOf(setterPosition) : GeneratedInjectors.NOT_GENERATED;
     }
 
-    private List<Type> getGenericParametersOf(Parameter parameter) {
-        return getGenericParameters(parameter.getParameterizedType());
+    private Object selectMock(SetterDescriptor setter) {
+        int selected = selector.selectSlot(setter.getType(), setter.getGenericSignature(), setter.getPropertyName(),
+                mocks.getIndex());
+        return selected == FusedMockSelector.NO_MOCK ? null : mocks.getMocks().get(selected).getMock();
     }
 
-    private void injectToSetterWhenSelected(List<MockHolder> matchingMocks, Method setter, Object target) {
-        if (notEmpty(matchingMocks)) {
-            setBySetter(setter, target, matchingMocks.get(0).getMock());
+    /**
+     * The setters of a class with the selected mocks. A setter is invoked only when a mock was selected for it, the
+     * selected mocks are never {@code null}. It is valid as long as the name selection strategies are not changed.
+     */
+    private static class SetterInjection {
+
+        private final SelectionStrategies strategies;
+        private final List<SetterDescriptor> setters;
+        private final int[] generatedIndexes;
+        private final Object[] selectedMocks;
+
+        SetterInjection(SelectionStrategies strategies, List<SetterDescriptor> setters, int[] generatedIndexes,
+                Object[] selectedMocks) {
+            this.strategies = strategies;
+            this.setters = setters;
+            this.generatedIndexes = generatedIndexes;
+            this.selectedMocks = selectedMocks;
         }
-    }
 
-    private String getFieldNameOf(String setterName) {
-        return Character.toLowerCase(setterName.charAt(3)) + setterName.substring(4);
+        void injectTo(Object target) {
+            for (int i = 0; i < selectedMocks.length; i++) {
+                if (notNull(selectedMocks[i])) {
+                    injectViaSetter(setters.get(i), target, generatedIndexes[i], selectedMocks[i]);
+                }
+            }
+        }
+
+        private void injectViaSetter(SetterDescriptor setter, Object target, int generatedIndex, Object mock) {
+            if (generatedIndex == GeneratedInjectors.NOT_GENERATED) {
+                setter.invoke(target, mock);
+            } else {
+                invokeGeneratedSetter(setter, target, generatedIndex, mock);
+            }
+        }
+
+        private void invokeGeneratedSetter(SetterDescriptor setter, Object target, int generatedIndex, Object mock) {
+            try {
+                GeneratedInjectors.find(target.getClass()).invokeSetter(target, generatedIndex, mock);
+            } catch (RuntimeException ex) {
+                throw new UnableToInvokeSetterException(setter.getMethod(), ex);
+            }
+        }
     }
 
-    private boolean notEmpty(List<?> list) {
-        return !list.isEmpty();
+    private static class InjectionTask implements Runnable {
+
+        private final SetterInjection injection;
+        private final List<?> targets;
+
+        InjectionTask(SetterInjection injection, List<?> targets) {
+            this.injection = injection;
+            this.targets = targets;
+        }
+
+        @Override
+        public void run() {
+            for (Object target : targets) {
+                injection.injectTo(target);
+            }
+        }
     }
 }
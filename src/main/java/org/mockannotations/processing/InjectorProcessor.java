@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.processing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import org.mockannotations.GeneratedInjector;
+
+/**
+ * Annotation processor which generates a {@link GeneratedInjector} for every class listed by
+ * {@link GenerateInjectors}. The generated injectors write the fields, invoke the setters and the constructors of the
+ * tested classes directly, and they are registered in {@code META-INF/services} so the runtime prefers them to
+ * reflection.
+ * <p>
+ * The processor is not registered automatically, it has to be enabled for the test compilation, e.g. by the
+ * {@code annotationProcessors} setting of the maven compiler plugin.
+ * <p>
+ * @author Balazs Berkes
+ */
+@SupportedAnnotationTypes("org.mockannotations.processing.GenerateInjectors")
+public class InjectorProcessor extends AbstractProcessor {
+
+    static final String SERVICE_FILE = "META-INF/services/" + GeneratedInjector.class.getName();
+
+    private final Set<String> processedTypes = new HashSet<String>();
+    private final Set<String> generatedInjectors = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+        } else {
+            for (TypeElement annotation : annotations) {
+                for (Element annotated : roundEnv.getElementsAnnotatedWith(annotation)) {
+                    generateInjectors(annotated);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generateInjectors(Element annotated) {
+        for (TypeElement tested : testedTypesOf(annotated)) {
+            String binaryName = processingEnv.getElementUtils().getBinaryName(tested).toString();
+            if (processedTypes.add(binaryName)) {
+                generateInjector(tested);
+            }
+        }
+    }
+
+    private void generateInjector(TypeElement tested) {
+        InjectorWriter writer = new InjectorWriter(processingEnv, tested);
+        if (writer.canGenerate()) {
+            writeSource(writer, tested);
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "No injector can be generated for " + tested + ", it is not an accessible concrete class.", tested);
+        }
+    }
+
+    private void writeSource(InjectorWriter writer, TypeElement tested) {
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(writer.getQualifiedName(), tested);
+            Writer out = sourceFile.openWriter();
+            try {
+                out.write(writer.write());
+            } finally {
+                out.close();
+            }
+            generatedInjectors.add(writer.getQualifiedName());
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write injector of " + tested + ": " + ex.getMessage(), tested);
+        }
+    }
+
+    private void writeServiceFile() {
+        if (!generatedInjectors.isEmpty()) {
+            try {
+                FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+                Writer out = serviceFile.openWriter();
+                try {
+                    for (String injector : generatedInjectors) {
+                        out.write(injector);
+                        out.write('\n');
+                    }
+                } finally {
+                    out.close();
+                }
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Cannot register generated injectors: " + ex.getMessage());
+            }
+        }
+    }
+
+    private List<TypeElement> testedTypesOf(Element annotated) {
+        List<TypeElement> testedTypes = new ArrayList<TypeElement>();
+        for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if (isGenerateInjectors(mirror)) {
+                addTestedTypes(mirror, testedTypes);
+            }
+        }
+        return testedTypes;
+    }
+
+    private boolean isGenerateInjectors(AnnotationMirror mirror) {
+        TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+        return type.getQualifiedName().contentEquals(GenerateInjectors.class.getCanonicalName());
+    }
+
+    private void addTestedTypes(AnnotationMirror mirror, List<TypeElement> testedTypes) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                for (Object value : (List<?>) entry.getValue().getValue()) {
+                    TypeMirror type = (TypeMirror) ((AnnotationValue) value).getValue();
+                    testedTypes.add((TypeElement) ((DeclaredType) type).asElement());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.processing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+import org.mockannotations.GeneratedInjector;
+
+/**
+ * Writes the source of the {@link GeneratedInjector} of one tested class. Only the members which are accessible from
+ * the package of the tested class are written directly, the runtime falls back to reflection for the others.
+ * <p>
+ * @author Balazs Berkes
+ */
+class InjectorWriter {
+
+    static final String SUFFIX = "_MockInjector";
+
+    private static final String INDENT = "    ";
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeElement tested;
+    private final PackageElement testedPackage;
+    private final String testedName;
+
+    private final Set<String> fieldSignatures = new LinkedHashSet<String>();
+    private final List<String> fieldStatements = new ArrayList<String>();
+    private final Set<String> setterSignatures = new LinkedHashSet<String>();
+    private final List<String> setterStatements = new ArrayList<String>();
+    private final List<String> constructorSignatures = new ArrayList<String>();
+    private final List<String> constructorStatements = new ArrayList<String>();
+
+    InjectorWriter(ProcessingEnvironment processingEnv, TypeElement tested) {
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.tested = tested;
+        this.testedPackage = elements.getPackageOf(tested);
+        this.testedName = types.erasure(tested.asType()).toString();
+    }
+
+    boolean canGenerate() {
+        return tested.getKind() == ElementKind.CLASS && !tested.getModifiers().contains(Modifier.ABSTRACT)
+                && isTopLevelOrStatic(tested) && isAccessible(tested);
+    }
+
+    String getQualifiedName() {
+        String packageName = testedPackage.getQualifiedName().toString();
+        return packageName.isEmpty() ? getSimpleName() : packageName + "." + getSimpleName();
+    }
+
+    String write() {
+        collectFields();
+        collectSetters();
+        collectConstructors();
+
+        StringBuilder source = new StringBuilder();
+        if (!testedPackage.isUnnamed()) {
+            source.append("package ").append(testedPackage.getQualifiedName()).append(";\n\n");
+        }
+        source.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+        source.append("public final class ").append(getSimpleName()).append(" implements ")
+                .append(GeneratedInjector.class.getName()).append(" {\n\n");
+        appendSignatures(source, "FIELDS", fieldSignatures);
+        appendSignatures(source, "SETTERS", setterSignatures);
+        appendSignatures(source, "CONSTRUCTORS", constructorSignatures);
+        source.append(INDENT).append("@Override\n");
+        source.append(INDENT).append("public Class<?> getTargetClass() {\n");
+        source.append(INDENT).append(INDENT).append("return ").append(testedName).append(".class;\n");
+        source.append(INDENT).append("}\n\n");
+        appendGetter(source, "getFieldSignatures", "FIELDS");
+        appendGetter(source, "getSetterSignatures", "SETTERS");
+        appendGetter(source, "getConstructorSignatures", "CONSTRUCTORS");
+        appendSwitch(source, "public void setField(Object target, int index, Object value)", fieldStatements);
+        appendSwitch(source, "public void invokeSetter(Object target, int index, Object value)", setterStatements);
+        appendSwitch(source, "public Object newInstance(int index, Object[] arguments)", constructorStatements);
+        source.setLength(source.length() - 1);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private String getSimpleName() {
+        String binaryName = elements.getBinaryName(tested).toString();
+        return binaryName.substring(binaryName.lastIndexOf('.') + 1).replace('$', '_') + SUFFIX;
+    }
+
+    private void collectFields() {
+        for (TypeElement type = tested; type != null && !isObject(type); type = superclassOf(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (isInjectable(field) && isAccessible(field, type) && isAccessible(field.asType())) {
+                    String signature = elements.getBinaryName(type) + "#" + field.getSimpleName();
+                    if (fieldSignatures.add(signature)) {
+                        fieldStatements.add("((" + erasureOf(type.asType()) + ") target)." + field.getSimpleName()
+                                + " = (" + erasureOf(field.asType()) + ") value;\n" + INDENT + INDENT + INDENT + "break;");
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectSetters() {
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(tested))) {
+            if (isSetter(method)) {
+                TypeMirror parameterType = method.getParameters().get(0).asType();
+                String signature = method.getSimpleName() + "(" + binaryNameOf(parameterType) + ")";
+                if (setterSignatures.add(signature)) {
+                    setterStatements.add("((" + testedName + ") target)." + method.getSimpleName()
+                            + "((" + erasureOf(parameterType) + ") value);\n" + INDENT + INDENT + INDENT + "break;");
+                }
+            }
+        }
+    }
+
+    private void collectConstructors() {
+        List<ExecutableElement> constructors = new ArrayList<ExecutableElement>();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(tested.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PRIVATE) && hasSupportedParameters(constructor)) {
+                constructors.add(constructor);
+            }
+        }
+        Collections.sort(constructors, new ParameterCountComparator());
+        for (ExecutableElement constructor : constructors) {
+            constructorSignatures.add(signatureOf(constructor));
+            constructorStatements.add("return new " + testedName + "(" + argumentsOf(constructor) + ");");
+        }
+    }
+
+    private String signatureOf(ExecutableElement constructor) {
+        StringBuilder signature = new StringBuilder("(");
+        for (VariableElement parameter : constructor.getParameters()) {
+            if (signature.length() > 1) {
+                signature.append(',');
+            }
+            signature.append(binaryNameOf(parameter.asType()));
+        }
+        return signature.append(')').toString();
+    }
+
+    private String argumentsOf(ExecutableElement constructor) {
+        StringBuilder arguments = new StringBuilder();
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                arguments.append(", ");
+            }
+            arguments.append('(').append(erasureOf(parameters.get(i).asType())).append(") arguments[").append(i).append(']');
+        }
+        return arguments.toString();
+    }
+
+    private void appendSignatures(StringBuilder source, String name, Iterable<String> signatures) {
+        source.append(INDENT).append("private static final String[] ").append(name).append(" = {");
+        boolean first = true;
+        for (String signature : signatures) {
+            source.append(first ? "" : ", ").append('"').append(signature).append('"');
+            first = false;
+        }
+        source.append("};\n\n");
+    }
+
+    private void appendGetter(StringBuilder source, String method, String constant) {
+        source.append(INDENT).append("@Override\n");
+        source.append(INDENT).append("public String[] ").append(method).append("() {\n");
+        source.append(INDENT).append(INDENT).append("return ").append(constant).append(".clone();\n");
+        source.append(INDENT).append("}\n\n");
+    }
+
+    private void appendSwitch(StringBuilder source, String method, List<String> statements) {
+        source.append(INDENT).append("@Override\n");
+        source.append(INDENT).append(method).append(" {\n");
+        source.append(INDENT).append(INDENT).append("try {\n");
+        source.append(INDENT).append(INDENT).append(INDENT).append("switch (index) {\n");
+        for (int i = 0; i < statements.size(); i++) {
+            source.append(INDENT).append(INDENT).append(INDENT).append("case ").append(i).append(":\n");
+            source.append(INDENT).append(INDENT).append(INDENT).append(INDENT)
+                    .append(statements.get(i).replace("\n", "\n" + INDENT)).append('\n');
+        }
+        source.append(INDENT).append(INDENT).append(INDENT).append("default:\n");
+        source.append(INDENT).append(INDENT).append(INDENT).append(INDENT)
+                .append("throw new IndexOutOfBoundsException(String.valueOf(index));\n");
+        source.append(INDENT).append(INDENT).append(INDENT).append("}\n");
+        source.append(INDENT).append(INDENT).append("} catch (RuntimeException ex) {\n");
+        source.append(INDENT).append(INDENT).append(INDENT).append("throw ex;\n");
+        source.append(INDENT).append(INDENT).append("} catch (Exception ex) {\n");
+        source.append(INDENT).append(INDENT).append(INDENT).append("throw new IllegalStateException(ex);\n");
+        source.append(INDENT).append(INDENT).append("}\n");
+        source.append(INDENT).append("}\n\n");
+    }
+
+    private boolean isInjectable(VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        return !modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.FINAL)
+                && !field.asType().getKind().isPrimitive();
+    }
+
+    private boolean isSetter(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC)
+                && method.getSimpleName().toString().startsWith("set") && method.getParameters().size() == 1
+                && hasSupportedParameters(method);
+    }
+
+    private boolean hasSupportedParameters(ExecutableElement executable) {
+        boolean supported = true;
+        for (VariableElement parameter : executable.getParameters()) {
+            TypeMirror type = parameter.asType();
+            supported &= binaryNameOf(type) != null && isAccessible(type);
+        }
+        return supported;
+    }
+
+    private boolean isAccessible(Element member, TypeElement declaringType) {
+        Set<Modifier> modifiers = member.getModifiers();
+        boolean accessible;
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            accessible = false;
+        } else if (isInTestedPackage(declaringType)) {
+            accessible = true;
+        } else {
+            accessible = modifiers.contains(Modifier.PUBLIC) && isAccessible(declaringType);
+        }
+        return accessible;
+    }
+
+    private boolean isAccessible(TypeMirror type) {
+        TypeMirror erasure = types.erasure(type);
+        boolean accessible = true;
+        if (erasure.getKind() == TypeKind.ARRAY) {
+            accessible = isAccessible(((ArrayType) erasure).getComponentType());
+        } else if (erasure.getKind() == TypeKind.DECLARED) {
+            accessible = isAccessible((TypeElement) ((DeclaredType) erasure).asElement());
+        }
+        return accessible;
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        boolean accessible = true;
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            Set<Modifier> modifiers = element.getModifiers();
+            accessible &= !modifiers.contains(Modifier.PRIVATE)
+                    && (modifiers.contains(Modifier.PUBLIC) || isInTestedPackage((TypeElement) element));
+        }
+        return accessible;
+    }
+
+    private boolean isTopLevelOrStatic(TypeElement type) {
+        boolean topLevelOrStatic = true;
+        for (Element element = type; element.getEnclosingElement() instanceof TypeElement; element = element.getEnclosingElement()) {
+            topLevelOrStatic &= element.getModifiers().contains(Modifier.STATIC);
+        }
+        return topLevelOrStatic;
+    }
+
+    private boolean isInTestedPackage(TypeElement type) {
+        return elements.getPackageOf(type).equals(testedPackage);
+    }
+
+    private boolean isObject(TypeElement type) {
+        return type.getQualifiedName().contentEquals(Object.class.getName());
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    private String erasureOf(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    /**
+     * Returns the name of the type as {@link Class#getName()} returns it, or {@code null} for array types.
+     */
+    private String binaryNameOf(TypeMirror type) {
+        TypeMirror erasure = types.erasure(type);
+        String name = null;
+        if (erasure.getKind().isPrimitive()) {
+            name = erasure.toString();
+        } else if (erasure.getKind() == TypeKind.DECLARED) {
+            name = elements.getBinaryName((TypeElement) ((DeclaredType) erasure).asElement()).toString();
+        }
+        return name;
+    }
+
+    private static class ParameterCountComparator implements Comparator<ExecutableElement> {
+
+        @Override
+        public int compare(ExecutableElement left, ExecutableElement right) {
+            return left.getParameters().size() - right.getParameters().size();
+        }
+    }
+}
@@ -15,8 +15,6 @@
  */
 package org.mockannotations.selection;
 
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.getGenericParameters;
-import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
@@ -24,56 +22,72 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.mockannotations.MockHolder;
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.GenericSignature;
 
 /**
  * Selects the the mocks which has the same generic type.
  * <p>
  * @author Balazs Berkes
  */
-public class ByGenericSelector implements MockSelector<List<Type>> {
+public class ByGenericSelector implements MockSelector<List<Type>>, IndexedMockSelector<List<Type>> {
 
-    private static MockSelector<List<Type>> singleton;
+    private static final MockSelector<List<Type>> singleton = new ByGenericSelector();
 
-    public static synchronized MockSelector<List<Type>> getSingleton() {
-        if (isNull(singleton)) {
-            singleton = new ByGenericSelector();
-        }
+    public static MockSelector<List<Type>> getSingleton() {
         return singleton;
     }
 
     @Override
     public List<MockHolder> selectByField(Field selection, List<MockHolder> mocks) {
-        return select(getGenericParameters(selection), mocks);
+        return select(ClassMetadata.forField(selection).getGenericSignature(), mocks);
     }
 
     @Override
     public List<MockHolder> select(List<Type> targetGenerics, List<MockHolder> mocks) {
+        return select(GenericSignature.of(targetGenerics), mocks);
+    }
+
+    /**
+     * Selects the mocks whose source field has the same generic parameters as the target signature.
+     * <p>
+     * @param targetSignature generic signature of the target
+     * @param mocks original list of mocks
+     * @return selected list of mocks
+     */
+    public List<MockHolder> select(GenericSignature targetSignature, List<MockHolder> mocks) {
         List<MockHolder> matchingMocks = new ArrayList<MockHolder>();
         for (MockHolder mockHolder : mocks) {
-            List<Type> sourceGenerics = mockHolder.getGenericParameters();
-            if (genericParametersAreMatching(targetGenerics, sourceGenerics)) {
+            if (targetSignature.matches(mockHolder.getGenericSignature())) {
                 matchingMocks.add(mockHolder);
             }
         }
         return matchingMocks;
     }
 
-    private boolean genericParametersAreMatching(List<Type> targetGenerics, List<Type> sourceGenerics) {
-        return orderlyEquals(sourceGenerics, targetGenerics);
+    @Override
+    public void filterByField(Field field, MockIndex index, CandidateSet candidates) {
+        filter(ClassMetadata.forField(field).getGenericSignature(), index, candidates);
+    }
+
+    @Override
+    public void filter(List<Type> targetGenerics, MockIndex index, CandidateSet candidates) {
+        filter(GenericSignature.of(targetGenerics), index, candidates);
     }
 
-    private boolean orderlyEquals(List<Type> left, List<Type> right) {
-        boolean equals = false;
-        if (left.size() == right.size()) {
-            equals = true;
-            for (int i = 0; i < right.size(); i++) {
-                Type leftElement = left.get(i);
-                Type rightElement = right.get(i);
-                if (!leftElement.equals(rightElement)) {
-                    equals = false;
-                }
+    /**
+     * Removes the candidates whose source field has different generic parameters than the target signature.
+     * <p>
+     * @param targetSignature generic signature of the target
+     * @param index index of the original list of mocks
+     * @param candidates positions of the mocks to select from, narrowed in place
+     */
+    public void filter(GenericSignature targetSignature, MockIndex index, CandidateSet candidates) {
+        List<MockHolder> mocks = index.getMocks();
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            if (!targetSignature.matches(mocks.get(slot).getGenericSignature())) {
+                candidates.remove(slot);
             }
         }
-        return equals;
     }
 }
@@ -15,13 +15,13 @@
  */
 package org.mockannotations.selection;
 
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
 import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.mockannotations.MockHolder;
 
@@ -30,35 +30,217 @@ import org.mockannotations.MockHolder;
  * <p>
  * @author Balazs Berkes
  */
-public class ByNameSelector implements MockSelector<String> {
+public class ByNameSelector implements MockSelector<String>, IndexedMockSelector<String> {
 
     public static final SelectionStrategy NAME_EQUALS_STRATEGY = new NameEqualsStrategy();
     public static final SelectionStrategy NAME_EQUALS_IGNORE_CASE_STRATEGY = new NameEqualsIgnoreCaseStrategy();
     public static final SelectionStrategy NAME_CONTAINS_STRATEGY = new NameContainsStrategy();
 
-    private final static List<SelectionStrategy> strategies = loadStrategies(NAME_EQUALS_STRATEGY, NAME_EQUALS_IGNORE_CASE_STRATEGY, NAME_CONTAINS_STRATEGY);
+    /**
+     * The default strategies: equals, equals ignore case and one contains the other.
+     */
+    public static final SelectionStrategies DEFAULT_STRATEGIES = SelectionStrategies.of(NAME_EQUALS_STRATEGY,
+            NAME_EQUALS_IGNORE_CASE_STRATEGY, NAME_CONTAINS_STRATEGY);
+
+    private static final int NOT_FOUND = -1;
 
-    private static MockSelector<String> singleton;
+    private static volatile SelectionStrategies globalStrategies = DEFAULT_STRATEGIES;
 
+    private static final ByNameSelector singleton = new ByNameSelector();
+
+    private final SelectionStrategies strategies;
+
+    /**
+     * Overrides the global strategies used by the selectors which have no strategies of their own. Selectors and
+     * injectors created with a {@link SelectionStrategies} are not affected.
+     * <p>
+     * @param strategies the strategies in priority order
+     */
     public static void overrideStrategy(SelectionStrategy... strategies) {
-        synchronized (ByNameSelector.strategies) {
-            ByNameSelector.strategies.clear();
-            ByNameSelector.strategies.addAll(Arrays.asList(strategies));
-        }
+        globalStrategies = SelectionStrategies.of(strategies);
     }
 
-    public static synchronized MockSelector<String> getSingleton() {
-        if (isNull(null)) {
-            singleton = new ByNameSelector();
-        }
+    /**
+     * Returns the global selection strategies. A new instance is returned after every
+     * {@link #overrideStrategy(SelectionStrategy...)}, so it can be used to detect the changes of the strategies.
+     * <p>
+     * @return the global strategies in priority order
+     */
+    public static SelectionStrategies getStrategies() {
+        return globalStrategies;
+    }
+
+    public static MockSelector<String> getSingleton() {
         return singleton;
     }
 
+    /**
+     * Creates a selector which follows the global strategies.
+     */
+    public ByNameSelector() {
+        this.strategies = null;
+    }
+
+    /**
+     * Creates a selector with its own strategies, it is not affected by {@link #overrideStrategy}.
+     * <p>
+     * @param strategies the strategies of the selector
+     */
+    public ByNameSelector(SelectionStrategies strategies) {
+        assertNotNull(strategies, "Strategies cannot be null!");
+        this.strategies = strategies;
+    }
+
+    private SelectionStrategies currentStrategies() {
+        return isNull(strategies) ? globalStrategies : strategies;
+    }
+
     @Override
     public List<MockHolder> selectByField(Field field, List<MockHolder> mocks) {
         return select(field.getName(), mocks);
     }
 
+    @Override
+    public List<MockHolder> selectByField(Field field, MockIndex index) {
+        return select(field.getName(), index);
+    }
+
+    @Override
+    public List<MockHolder> selectByField(Field field, List<MockHolder> candidates, MockIndex index) {
+        return select(field.getName(), candidates, index);
+    }
+
+    @Override
+    public List<MockHolder> select(String targetName, MockIndex index) {
+        return select(targetName, index.getMocks(), index);
+    }
+
+    /**
+     * Selects the matching mock from the candidates like {@link #select(String, List)} but the built-in strategies
+     * are answered by the name index of the mocks. The strategies are tried in priority order and the selection stops
+     * at the first one with a matching candidate. Custom strategies are evaluated for each candidate.
+     * <p>
+     * @param targetName name of the field the mock will be injected
+     * @param candidates mocks of the indexed list to select from
+     * @param index index of the original list of mocks
+     * @return return selected list of mocks (the list can only contains one or zero elements)
+     */
+    @Override
+    public List<MockHolder> select(String targetName, List<MockHolder> candidates, MockIndex index) {
+        boolean allIndexedMocks = candidates == index.getMocks();
+        int[] candidateSlots = allIndexedMocks ? null : index.slotsOf(candidates);
+        if (!allIndexedMocks && isNull(candidateSlots)) {
+            return select(targetName, candidates);
+        }
+        List<MockHolder> matchingMocks = new ArrayList<MockHolder>();
+        if (!candidates.isEmpty()) {
+            matchingMocks.add(candidates.get(findMatchingPosition(targetName, candidates, candidateSlots, index)));
+        }
+        return matchingMocks;
+    }
+
+    @Override
+    public void filterByField(Field field, MockIndex index, CandidateSet candidates) {
+        filter(field.getName(), index, candidates);
+    }
+
+    /**
+     * Keeps only the candidate of the highest priority match, or the first candidate when none of them match. Exact
+     * matches are looked up in the name index of the mocks, the other strategies are evaluated for each candidate.
+     * <p>
+     * @param targetName name of the field the mock will be injected
+     * @param index index of the original list of mocks
+     * @param candidates positions of the mocks to select from, narrowed to at most one
+     */
+    @Override
+    public void filter(String targetName, MockIndex index, CandidateSet candidates) {
+        int first = candidates.first();
+        if (first != CandidateSet.NONE) {
+            int selected = findMatchingSlot(targetName, index, candidates);
+            candidates.retainOnly(selected == NOT_FOUND ? first : selected);
+        }
+    }
+
+    private int findMatchingSlot(String targetName, MockIndex index, CandidateSet candidates) {
+        for (SelectionStrategy strategy : currentStrategies()) {
+            int slot = strategy.getClass() == NameEqualsStrategy.class
+                    ? findFirstCandidate(index.getNameIndex().equalTo(targetName), candidates)
+                    : findMatchingSlot(strategy, targetName, index.getMocks(), candidates);
+            if (slot != NOT_FOUND) {
+                return slot;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int findFirstCandidate(int[] slots, CandidateSet candidates) {
+        for (int slot : slots) {
+            if (candidates.contains(slot)) {
+                return slot;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int findMatchingSlot(SelectionStrategy strategy, String targetName, List<MockHolder> mocks,
+            CandidateSet candidates) {
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            if (strategy.isMatching(targetName, mocks.get(slot).getSourceName())) {
+                return slot;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int findMatchingPosition(String targetName, List<MockHolder> candidates, int[] candidateSlots,
+            MockIndex index) {
+        for (SelectionStrategy strategy : currentStrategies()) {
+            int[] matchingSlots = findMatchingSlots(strategy, targetName, index.getNameIndex());
+            int position;
+            if (isNull(matchingSlots)) {
+                position = findMatchingPosition(strategy, targetName, candidates);
+            } else if (isNull(candidateSlots)) {
+                position = matchingSlots.length > 0 ? matchingSlots[0] : NOT_FOUND;
+            } else {
+                position = findMatchingPosition(candidateSlots, matchingSlots);
+            }
+            if (position != NOT_FOUND) {
+                return position;
+            }
+        }
+        return 0;
+    }
+
+    private int[] findMatchingSlots(SelectionStrategy strategy, String targetName, NameIndex names) {
+        int[] slots = null;
+        if (strategy.getClass() == NameEqualsStrategy.class) {
+            slots = names.equalTo(targetName);
+        } else if (strategy.getClass() == NameEqualsIgnoreCaseStrategy.class) {
+            slots = names.equalToIgnoreCase(targetName);
+        } else if (strategy.getClass() == NameContainsStrategy.class) {
+            slots = names.containing(targetName);
+        }
+        return slots;
+    }
+
+    private int findMatchingPosition(int[] candidateSlots, int[] matchingSlots) {
+        for (int position = 0; position < candidateSlots.length; position++) {
+            if (Arrays.binarySearch(matchingSlots, candidateSlots[position]) >= 0) {
+                return position;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int findMatchingPosition(SelectionStrategy strategy, String targetName, List<MockHolder> candidates) {
+        for (int position = 0; position < candidates.size(); position++) {
+            if (strategy.isMatching(targetName, candidates.get(position).getSourceName())) {
+                return position;
+            }
+        }
+        return NOT_FOUND;
+    }
+
     /**
      * Select a the matching mock from the given mocks according to the selection strategy.
      * <p>
@@ -78,9 +260,10 @@ public class ByNameSelector implements MockSelector<String> {
         List<MockHolder> matchingMocks = new ArrayList<MockHolder>();
         MockHolder matchingMock = null;
 
-        int highestPriority = strategies.size() + 1;
+        SelectionStrategies selectionStrategies = currentStrategies();
+        int highestPriority = selectionStrategies.size() + 1;
         for (MockHolder mock : mocks) {
-            int currentPrio = getPriorityLevel(targetName, mock);
+            int currentPrio = getPriorityLevel(targetName, mock, selectionStrategies);
             if (currentPrio < highestPriority) {
                 highestPriority = currentPrio;
                 matchingMock = mock;
@@ -91,9 +274,9 @@ public class ByNameSelector implements MockSelector<String> {
         return matchingMocks;
     }
 
-    private int getPriorityLevel(String targetName, MockHolder mock) {
+    private int getPriorityLevel(String targetName, MockHolder mock, SelectionStrategies selectionStrategies) {
         int currentPrio = 0;
-        for (SelectionStrategy strategy : strategies) {
+        for (SelectionStrategy strategy : selectionStrategies) {
             if (strategy.isMatching(targetName, mock.getSourceName())) {
                 break;
             }
@@ -108,10 +291,6 @@ public class ByNameSelector implements MockSelector<String> {
         }
     }
 
-    private static List<SelectionStrategy> loadStrategies(SelectionStrategy... selectionStrategies) {
-        return new CopyOnWriteArrayList<SelectionStrategy>(Arrays.asList(selectionStrategies));
-    }
-
     public static interface SelectionStrategy {
 
         /**
@@ -15,8 +15,7 @@
  */
 package org.mockannotations.selection;
 
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.getInheritanceDistance;
-import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationReflectionUtils.getTypeInheritanceRank;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -25,19 +24,17 @@ import java.util.List;
 import org.mockannotations.MockHolder;
 
 /**
- * Selects the the mocks which are the closest.
+ * Selects the the mocks which are the closest. Mocks at the same distance from an interface are ranked by
+ * {@link org.mockannotations.utils.InheritanceDistances#rank(Class, Class)}.
  * <p>
  * @author Balazs Berkes
  */
-public class ByTypeSelector implements MockSelector<Class<?>> {
+public class ByTypeSelector implements MockSelector<Class<?>>, IndexedMockSelector<Class<?>> {
 
-    private static final int MAX_DEPTH = Integer.MAX_VALUE;
-    private static MockSelector<Class<?>> singleton;
+    private static final long MAX_RANK = Long.MAX_VALUE;
+    private static final MockSelector<Class<?>> singleton = new ByTypeSelector();
 
-    public static synchronized MockSelector<Class<?>> getSingleton() {
-        if (isNull(null)) {
-            singleton = new ByTypeSelector();
-        }
+    public static MockSelector<Class<?>> getSingleton() {
         return singleton;
     }
 
@@ -46,38 +43,69 @@ public class ByTypeSelector implements MockSelector<Class<?>> {
         return select(field.getType(), mocks);
     }
 
+    @Override
+    public List<MockHolder> selectByField(Field field, MockIndex index) {
+        return select(field.getType(), index);
+    }
+
+    @Override
+    public List<MockHolder> select(Class<?> selection, MockIndex index) {
+        if (index.isComplete()) {
+            return index.getClosestMocks(selection);
+        }
+        List<MockHolder> closestMocks = new ArrayList<MockHolder>();
+        for (int slot : index.getRankMatrix().closestSlots(selection)) {
+            closestMocks.add(index.getMocks().get(slot));
+        }
+        return closestMocks;
+    }
+
     @Override
     public List<MockHolder> select(Class<?> selection, List<MockHolder> mocks) {
         List<MockHolder> closestMocks = new ArrayList<MockHolder>();
-        int closestDist = MAX_DEPTH;
+        long closestRank = MAX_RANK;
         for (MockHolder mock : mocks) {
-            final int currentDist = getInheritanceDistance(mock.getMock(), selection);
-            if (isInstance(currentDist) && isCloserThanCurrent(currentDist, closestDist)) {
-                closestDist = currentDist;
+            final long currentRank = getTypeInheritanceRank(mock.getMockType(), selection);
+            if (isInstance(currentRank) && isCloserThanCurrent(currentRank, closestRank)) {
+                closestRank = currentRank;
                 closestMocks.clear();
                 closestMocks.add(mock);
-            } else if (isInstance(currentDist) && isCloseAsCurrent(currentDist, closestDist)) {
+            } else if (isInstance(currentRank) && isCloseAsCurrent(currentRank, closestRank)) {
                 closestMocks.add(mock);
             }
         }
 
-        return clearIfNoInstanceFound(closestDist, closestMocks);
+        return clearIfNoInstanceFound(closestRank, closestMocks);
+    }
+
+    @Override
+    public void filterByField(Field field, MockIndex index, CandidateSet candidates) {
+        filter(field.getType(), index, candidates);
+    }
+
+    @Override
+    public void filter(Class<?> selection, MockIndex index, CandidateSet candidates) {
+        if (index.isComplete() && candidates.containsAny(index.getClosestSlots(selection))) {
+            candidates.retainAll(index.getClosestSlots(selection));
+        } else {
+            index.getRankMatrix().retainClosest(selection, candidates);
+        }
     }
 
-    private boolean isInstance(final int dist) {
-        return dist != -1;
+    private boolean isInstance(final long rank) {
+        return rank != -1;
     }
 
-    private boolean isCloserThanCurrent(final int dist, int inheritanceDistance) {
-        return dist < inheritanceDistance;
+    private boolean isCloserThanCurrent(final long rank, long closestRank) {
+        return rank < closestRank;
     }
 
-    private boolean isCloseAsCurrent(final int dist, int inheritanceDistance) {
-        return dist == inheritanceDistance;
+    private boolean isCloseAsCurrent(final long rank, long closestRank) {
+        return rank == closestRank;
     }
 
-    private List<MockHolder> clearIfNoInstanceFound(int closestDist, List<MockHolder> closestMocks) {
-        if (closestDist == MAX_DEPTH) {
+    private List<MockHolder> clearIfNoInstanceFound(long closestRank, List<MockHolder> closestMocks) {
+        if (closestRank == MAX_RANK) {
             closestMocks.clear();
         }
         return closestMocks;
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import java.util.Arrays;
+
+/**
+ * Mutable set of mock positions of an indexed mock list, stored as a bitset of long words. The set is narrowed in
+ * place by the {@link IndexedMockSelector}s and it can be reset and reused for the next selection, so selecting does
+ * not allocate.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class CandidateSet {
+
+    /**
+     * Position returned when there is no more candidate.
+     */
+    public static final int NONE = -1;
+
+    private static final int ADDRESS_BITS = 6;
+    private static final long ALL_BITS = -1L;
+
+    private long[] words;
+    private int size;
+
+    /**
+     * Creates a set containing every position of a mock list of the given size.
+     * <p>
+     * @param size number of the indexed mocks
+     */
+    public CandidateSet(int size) {
+        this.words = new long[wordCount(size)];
+        reset(size);
+    }
+
+    /**
+     * Resets the set to contain every position of a mock list of the given size. The words are reused when they are
+     * large enough.
+     * <p>
+     * @param size number of the indexed mocks
+     */
+    public void reset(int size) {
+        int wordCount = wordCount(size);
+        if (words.length < wordCount) {
+            words = new long[wordCount];
+        }
+        Arrays.fill(words, 0, wordCount, ALL_BITS);
+        Arrays.fill(words, wordCount, words.length, 0L);
+        if (wordCount > 0 && (size & 63) != 0) {
+            words[wordCount - 1] = ALL_BITS >>> (Long.SIZE - (size & 63));
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of the positions which can be in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int slot) {
+        return slot >= 0 && slot < size && (words[slot >>> ADDRESS_BITS] & (1L << slot)) != 0;
+    }
+
+    public void add(int slot) {
+        words[slot >>> ADDRESS_BITS] |= 1L << slot;
+    }
+
+    public void remove(int slot) {
+        words[slot >>> ADDRESS_BITS] &= ~(1L << slot);
+    }
+
+    /**
+     * Removes every position.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * Keeps only the given position.
+     * <p>
+     * @param slot a position of the set
+     */
+    public void retainOnly(int slot) {
+        clear();
+        add(slot);
+    }
+
+    /**
+     * Keeps only the positions which are also in the given ascending array.
+     * <p>
+     * @param sortedSlots positions in ascending order
+     */
+    public void retainAll(int[] sortedSlots) {
+        int next = 0;
+        for (int slot = first(); slot != NONE; slot = next(slot)) {
+            while (next < sortedSlots.length && sortedSlots[next] < slot) {
+                next++;
+            }
+            if (next == sortedSlots.length || sortedSlots[next] != slot) {
+                remove(slot);
+            }
+        }
+    }
+
+    /**
+     * Determines whether any of the given positions is in the set.
+     * <p>
+     * @param slots positions to check
+     * @return {@code true} if the set contains at least one of them
+     */
+    public boolean containsAny(int[] slots) {
+        for (int slot : slots) {
+            if (contains(slot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return first() == NONE;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the lowest position of the set.
+     * <p>
+     * @return the position or {@link #NONE} if the set is empty
+     */
+    public int first() {
+        return nextFrom(0);
+    }
+
+    /**
+     * Returns the lowest position of the set which is greater than the given one.
+     * <p>
+     * @param slot the previous position
+     * @return the position or {@link #NONE} if there is no more
+     */
+    public int next(int slot) {
+        return nextFrom(slot + 1);
+    }
+
+    private int nextFrom(int from) {
+        int wordIndex = from >>> ADDRESS_BITS;
+        if (from >= size) {
+            return NONE;
+        }
+        long word = words[wordIndex] & (ALL_BITS << from);
+        while (word == 0) {
+            if (++wordIndex == words.length) {
+                return NONE;
+            }
+            word = words[wordIndex];
+        }
+        return (wordIndex << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+    }
+
+    private static int wordCount(int size) {
+        return (size + 63) >>> ADDRESS_BITS;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("CandidateSet[");
+        for (int slot = first(); slot != NONE; slot = next(slot)) {
+            builder.append(slot == first() ? "" : ", ").append(slot);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.mockannotations.utils.MockAnnotationReflectionUtils.getTypeInheritanceRank;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockannotations.MockHolder;
+import org.mockannotations.selection.ByNameSelector.SelectionStrategy;
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.GenericSignature;
+
+/**
+ * Selects the mock of a field in a single pass. It gives the same result as the chain of {@link ByTypeSelector},
+ * {@link ByGenericSelector} and {@link ByNameSelector} taking the first selected mock, but it evaluates the type
+ * rank, the generic signature and the name priority of each mock at once and keeps only the best candidate, so no
+ * intermediate lists are created.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class FusedMockSelector implements MockSelector<Field> {
+
+    /**
+     * Position returned when none of the mocks can be injected.
+     */
+    public static final int NO_MOCK = -1;
+
+    private static final long NOT_INSTANCE = -1;
+    private static final FusedMockSelector singleton = new FusedMockSelector();
+
+    private final SelectionStrategies strategies;
+
+    public static FusedMockSelector getSingleton() {
+        return singleton;
+    }
+
+    /**
+     * Creates a selector which follows the global name selection strategies of {@link ByNameSelector}.
+     */
+    public FusedMockSelector() {
+        this.strategies = null;
+    }
+
+    /**
+     * Creates a selector with its own name selection strategies, it is not affected by
+     * {@link ByNameSelector#overrideStrategy}.
+     * <p>
+     * @param strategies the name selection strategies of the selector
+     */
+    public FusedMockSelector(SelectionStrategies strategies) {
+        assertNotNull(strategies, "Strategies cannot be null!");
+        this.strategies = strategies;
+    }
+
+    /**
+     * Returns the name selection strategies used by the selector.
+     * <p>
+     * @return the own strategies of the selector or the current global strategies
+     */
+    public SelectionStrategies getStrategies() {
+        return isNull(strategies) ? ByNameSelector.getStrategies() : strategies;
+    }
+
+    @Override
+    public List<MockHolder> selectByField(Field field, List<MockHolder> mocks) {
+        return select(field, mocks);
+    }
+
+    @Override
+    public List<MockHolder> selectByField(Field field, MockIndex index) {
+        return select(field, index);
+    }
+
+    /**
+     * Selects the mock of the field.
+     * <p>
+     * @param field the field to be injected
+     * @param mocks original list of mocks
+     * @return selected list of mocks (the list can only contains one or zero elements)
+     */
+    @Override
+    public List<MockHolder> select(Field field, List<MockHolder> mocks) {
+        return toSelection(selectSlot(field, mocks), mocks);
+    }
+
+    @Override
+    public List<MockHolder> select(Field field, MockIndex index) {
+        return toSelection(selectSlot(field, index), index.getMocks());
+    }
+
+    /**
+     * Selects the position of the mock of the field.
+     * <p>
+     * @param field the field to be injected
+     * @param mocks original list of mocks
+     * @return the position of the selected mock or {@link #NO_MOCK}
+     */
+    public int selectSlot(Field field, List<MockHolder> mocks) {
+        return selectSlot(field.getType(), ClassMetadata.forField(field).getGenericSignature(), field.getName(), mocks);
+    }
+
+    /**
+     * Selects the position of the mock of the field from an indexed list of mocks.
+     * <p>
+     * @param field the field to be injected
+     * @param index index of the original list of mocks
+     * @return the position of the selected mock or {@link #NO_MOCK}
+     */
+    public int selectSlot(Field field, MockIndex index) {
+        return selectSlot(field.getType(), ClassMetadata.forField(field).getGenericSignature(), field.getName(), index);
+    }
+
+    /**
+     * Selects the position of the mock for the given type, generic signature and name.
+     * <p>
+     * @param type type of the target
+     * @param generics generic signature of the target
+     * @param name name of the target
+     * @param mocks original list of mocks
+     * @return the position of the selected mock or {@link #NO_MOCK}
+     */
+    public int selectSlot(Class<?> type, GenericSignature generics, String name, List<MockHolder> mocks) {
+        SelectionStrategies selectionStrategies = getStrategies();
+        long closestRank = Long.MAX_VALUE;
+        int selected = NO_MOCK;
+        int selectedPriority = 0;
+        for (int slot = 0; slot < mocks.size(); slot++) {
+            MockHolder mock = mocks.get(slot);
+            long rank = getTypeInheritanceRank(mock.getMockType(), type);
+            if (rank == NOT_INSTANCE || rank > closestRank) {
+                continue;
+            }
+            if (rank < closestRank) {
+                closestRank = rank;
+                selected = NO_MOCK;
+            }
+            if (isBetterCandidate(selected, selectedPriority) && generics.matches(mock.getGenericSignature())) {
+                int priority = priorityOf(name, mock, selectionStrategies);
+                if (selected == NO_MOCK || priority < selectedPriority) {
+                    selected = slot;
+                    selectedPriority = priority;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Selects the position of the mock for the given type, generic signature and name from an indexed list of mocks.
+     * Only the mocks which are the closest to the type are evaluated.
+     * <p>
+     * @param type type of the target
+     * @param generics generic signature of the target
+     * @param name name of the target
+     * @param index index of the original list of mocks
+     * @return the position of the selected mock or {@link #NO_MOCK}
+     */
+    public int selectSlot(Class<?> type, GenericSignature generics, String name, MockIndex index) {
+        if (!index.isComplete()) {
+            return selectSlot(type, generics, name, index.getMocks());
+        }
+        SelectionStrategies selectionStrategies = getStrategies();
+        List<MockHolder> mocks = index.getMocks();
+        int selected = NO_MOCK;
+        int selectedPriority = 0;
+        for (int slot : index.getClosestSlots(type)) {
+            MockHolder mock = mocks.get(slot);
+            if (isBetterCandidate(selected, selectedPriority) && generics.matches(mock.getGenericSignature())) {
+                int priority = priorityOf(name, mock, selectionStrategies);
+                if (selected == NO_MOCK || priority < selectedPriority) {
+                    selected = slot;
+                    selectedPriority = priority;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isBetterCandidate(int selected, int selectedPriority) {
+        return selected == NO_MOCK || selectedPriority > 0;
+    }
+
+    private static int priorityOf(String name, MockHolder mock, SelectionStrategies strategies) {
+        String sourceName = mock.getSourceName();
+        int priority = 0;
+        for (SelectionStrategy strategy : strategies) {
+            if (strategy.isMatching(name, sourceName)) {
+                break;
+            }
+            priority++;
+        }
+        return priority;
+    }
+
+    private static List<MockHolder> toSelection(int slot, List<MockHolder> mocks) {
+        List<MockHolder> selected = new ArrayList<MockHolder>(1);
+        if (slot != NO_MOCK) {
+            selected.add(mocks.get(slot));
+        }
+        return selected;
+    }
+}
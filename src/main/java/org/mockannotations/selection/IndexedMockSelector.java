@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import java.lang.reflect.Field;
+
+/**
+ * Selects mocks by narrowing a {@link CandidateSet} over an indexed list of mocks in place. Unlike
+ * {@link MockSelector} it does not create lists, the same candidate set can be passed through several selectors and
+ * reused for the next selection.
+ * <p>
+ * @author Balazs Berkes
+ * @param <T> type of object which the mock will be compared to
+ * @see IndexedSelectorAdapter
+ */
+public interface IndexedMockSelector<T> {
+
+    /**
+     * Removes the candidates which are not selected according to the rules of implementation.
+     * <p>
+     * @param selection the reference to compare in the implemented rule
+     * @param index index of the original list of mocks
+     * @param candidates positions of the mocks to select from, narrowed in place
+     */
+    void filter(T selection, MockIndex index, CandidateSet candidates);
+
+    /**
+     * Removes the candidates which are not selected according to the rules of implementation.
+     * <p>
+     * @param field with and attribute which will be the reference to compare in
+     * the implemented rule
+     * @param index index of the original list of mocks
+     * @param candidates positions of the mocks to select from, narrowed in place
+     */
+    void filterByField(Field field, MockIndex index, CandidateSet candidates);
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockannotations.MockHolder;
+
+/**
+ * Provides the list based {@link MockSelector} interface for an {@link IndexedMockSelector}. The candidate sets are
+ * scratch buffers reused per thread.
+ * <p>
+ * A list of mocks is not indexed for a single query: the list based calls are delegated to the list based selection
+ * of the wrapped selector when it has one. Otherwise the index of the last list is reused as long as the list holds
+ * the same holders with the same mock types and source fields.
+ * <p>
+ * @author Balazs Berkes
+ * @param <T> type of object which the mock will be compared to
+ */
+public class IndexedSelectorAdapter<T> implements MockSelector<T> {
+
+    private static final ThreadLocal<CandidateSet> scratch = new ThreadLocal<CandidateSet>() {
+
+        @Override
+        protected CandidateSet initialValue() {
+            return new CandidateSet(0);
+        }
+    };
+
+    private final IndexedMockSelector<T> selector;
+    private final MockSelector<T> listSelector;
+    private volatile IndexedList lastIndexed;
+
+    @SuppressWarnings("unchecked")
+    public IndexedSelectorAdapter(IndexedMockSelector<T> selector) {
+        this.selector = selector;
+        this.listSelector = selector instanceof MockSelector ? (MockSelector<T>) selector : null;
+    }
+
+    @Override
+    public List<MockHolder> select(T selection, List<MockHolder> mocks) {
+        return notNull(listSelector) ? listSelector.select(selection, mocks) : select(selection, indexOf(mocks));
+    }
+
+    @Override
+    public List<MockHolder> selectByField(Field field, List<MockHolder> mocks) {
+        return notNull(listSelector) ? listSelector.selectByField(field, mocks) : selectByField(field, indexOf(mocks));
+    }
+
+    @Override
+    public List<MockHolder> select(T selection, MockIndex index) {
+        CandidateSet candidates = candidatesOf(index);
+        selector.filter(selection, index, candidates);
+        return toList(candidates, index);
+    }
+
+    @Override
+    public List<MockHolder> selectByField(Field field, MockIndex index) {
+        CandidateSet candidates = candidatesOf(index);
+        selector.filterByField(field, index, candidates);
+        return toList(candidates, index);
+    }
+
+    private MockIndex indexOf(List<MockHolder> mocks) {
+        IndexedList indexed = lastIndexed;
+        if (isNull(indexed) || !indexed.isIndexOf(mocks)) {
+            indexed = new IndexedList(mocks);
+            lastIndexed = indexed;
+        }
+        return indexed.index;
+    }
+
+    private static CandidateSet candidatesOf(MockIndex index) {
+        CandidateSet candidates = scratch.get();
+        candidates.reset(index.getMocks().size());
+        return candidates;
+    }
+
+    private static List<MockHolder> toList(CandidateSet candidates, MockIndex index) {
+        List<MockHolder> selected = new ArrayList<MockHolder>();
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            selected.add(index.getMocks().get(slot));
+        }
+        return selected;
+    }
+
+    /**
+     * The index of a list together with the mock types and the source fields of the indexed holders.
+     */
+    private static final class IndexedList {
+
+        private final MockIndex index;
+        private final Class<?>[] mockTypes;
+        private final Field[] sourceFields;
+
+        private IndexedList(List<MockHolder> mocks) {
+            this.index = MockIndex.of(mocks);
+            this.mockTypes = new Class<?>[mocks.size()];
+            this.sourceFields = new Field[mocks.size()];
+            for (int i = 0; i < mockTypes.length; i++) {
+                mockTypes[i] = mocks.get(i).getMockType();
+                sourceFields[i] = mocks.get(i).getSourceField();
+            }
+        }
+
+        private boolean isIndexOf(List<MockHolder> mocks) {
+            List<MockHolder> indexedMocks = index.getMocks();
+            if (indexedMocks.size() != mocks.size()) {
+                return false;
+            }
+            for (int i = 0; i < mockTypes.length; i++) {
+                MockHolder mock = mocks.get(i);
+                if (mock != indexedMocks.get(i) || mock.getMockType() != mockTypes[i]
+                        || mock.getSourceField() != sourceFields[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
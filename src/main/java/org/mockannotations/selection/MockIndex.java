@@ -0,0 +1,343 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mockannotations.MockHolder;
+import org.mockannotations.utils.InheritanceDistances;
+
+/**
+ * Immutable index over a list of mocks. It is built once per mock list and maps every supertype (including the
+ * interfaces) of the runtime class of each mock to the mocks which are the closest to that type, so the closest mocks
+ * of a type are found by a single hash lookup instead of scanning the whole list.
+ * <p>
+ * The mocks are ranked by the cached {@link InheritanceDistances}, like {@link ByTypeSelector} does. Mocks which are
+ * arrays are not indexed, when the list contains any of them the lookups fall back to the linear selection.
+ * <p>
+ * The source names of the mocks are indexed on demand for the {@link ByNameSelector}, the ranks of the types which
+ * are not indexed are kept in a {@link TypeRankMatrix} created on demand.
+ * <p>
+ * When a list of mocks changes, {@link #update(List, Set)} derives the index of the new list from the previous one
+ * and recomputes only the types affected by the change.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class MockIndex {
+
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final List<MockHolder> mocks;
+    private final Map<Class<?>, ClosestMocks> closestMocksByType;
+    private final boolean complete;
+    private volatile Map<MockHolder, Integer> slots;
+    private volatile NameIndex nameIndex;
+    private volatile TypeRankMatrix rankMatrix;
+
+    /**
+     * Builds the index of the given mocks.
+     * <p>
+     * @param mocks list of mocks to be indexed
+     * @return the index of a snapshot of the list
+     */
+    public static MockIndex of(List<MockHolder> mocks) {
+        return new MockIndex(Collections.unmodifiableList(new ArrayList<MockHolder>(mocks)));
+    }
+
+    private MockIndex(List<MockHolder> mocks) {
+        this.mocks = mocks;
+        this.closestMocksByType = new HashMap<Class<?>, ClosestMocks>();
+        this.complete = indexMocks();
+    }
+
+    private MockIndex(List<MockHolder> mocks, MockIndex previous, Set<Class<?>> affectedTypes) {
+        this.mocks = mocks;
+        this.closestMocksByType = new HashMap<Class<?>, ClosestMocks>();
+        this.complete = reindexMocks(previous, affectedTypes);
+    }
+
+    /**
+     * Builds the index of a changed list of mocks from this index. The closest mocks of the types which are not
+     * affected by the change are taken over from this index, only the affected types are indexed again. The mocks
+     * kept from the original list must keep their relative order.
+     * <p>
+     * @param changedMocks the changed list of mocks
+     * @param affectedTypes the supertypes (including the interfaces) of the types of the added and removed mocks
+     * @return the index of a snapshot of the changed list, equal to {@link #of(List)} of the list
+     */
+    public MockIndex update(List<MockHolder> changedMocks, Set<Class<?>> affectedTypes) {
+        return new MockIndex(Collections.unmodifiableList(new ArrayList<MockHolder>(changedMocks)), this,
+                affectedTypes);
+    }
+
+    /**
+     * Returns the indexed mocks.
+     * <p>
+     * @return unmodifiable {@code List<MockHolder>} in the original order
+     */
+    public List<MockHolder> getMocks() {
+        return mocks;
+    }
+
+    /**
+     * Determines whether every mock is indexed by its type. When some mocks are not indexed,
+     * {@link #getClosestMocks(Class)} must not be used.
+     * <p>
+     * @return {@code true} if type lookups can be answered from the index
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the mocks which are instances of the given type and are the closest to it, in the original order.
+     * <p>
+     * @param type type of the mock
+     * @return new {@code List<MockHolder>} of the closest mocks, empty if none of the mocks are instance of the type
+     */
+    public List<MockHolder> getClosestMocks(Class<?> type) {
+        int[] closestSlots = getClosestSlots(type);
+        List<MockHolder> closestMocks = new ArrayList<MockHolder>(closestSlots.length);
+        for (int slot : closestSlots) {
+            closestMocks.add(mocks.get(slot));
+        }
+        return closestMocks;
+    }
+
+    /**
+     * Returns the positions of the mocks which are the closest to the given type in ascending order. The returned
+     * array is shared, it must not be modified.
+     */
+    int[] getClosestSlots(Class<?> type) {
+        ClosestMocks closest = closestMocksByType.get(type);
+        return isNull(closest) ? NO_SLOTS : closest.slots;
+    }
+
+    /**
+     * Determines the positions of the given mocks in the indexed list.
+     * <p>
+     * @param candidates mocks of the indexed list
+     * @return the positions in the order of the candidates or {@code null} if any of them is not indexed
+     */
+    int[] slotsOf(List<MockHolder> candidates) {
+        Map<MockHolder, Integer> slotsByMock = getSlots();
+        int[] candidateSlots = new int[candidates.size()];
+        for (int i = 0; i < candidateSlots.length; i++) {
+            Integer slot = slotsByMock.get(candidates.get(i));
+            if (isNull(slot)) {
+                return null;
+            }
+            candidateSlots[i] = slot;
+        }
+        return candidateSlots;
+    }
+
+    /**
+     * Returns the index of the source names of the mocks. It is built on the first call.
+     */
+    NameIndex getNameIndex() {
+        NameIndex names = nameIndex;
+        if (isNull(names)) {
+            names = new NameIndex(mocks);
+            nameIndex = names;
+        }
+        return names;
+    }
+
+    /**
+     * Returns the rank matrix of the types of the mocks. It is created on the first call.
+     */
+    TypeRankMatrix getRankMatrix() {
+        TypeRankMatrix matrix = rankMatrix;
+        if (isNull(matrix)) {
+            matrix = TypeRankMatrix.of(mocks);
+            rankMatrix = matrix;
+        }
+        return matrix;
+    }
+
+    private Map<MockHolder, Integer> getSlots() {
+        Map<MockHolder, Integer> slotsByMock = slots;
+        if (isNull(slotsByMock)) {
+            slotsByMock = new IdentityHashMap<MockHolder, Integer>();
+            for (int slot = mocks.size() - 1; slot >= 0; slot--) {
+                slotsByMock.put(mocks.get(slot), slot);
+            }
+            slots = slotsByMock;
+        }
+        return slotsByMock;
+    }
+
+    private boolean indexMocks() {
+        boolean allIndexed = true;
+        for (int slot = 0; slot < mocks.size(); slot++) {
+            Class<?> mockType = mocks.get(slot).getMockType();
+            if (isNull(mockType)) {
+                continue;
+            }
+            if (mockType.isArray()) {
+                allIndexed = false;
+            } else {
+                indexMock(slot, mockType);
+            }
+        }
+        for (ClosestMocks closest : closestMocksByType.values()) {
+            closest.trim();
+        }
+        return allIndexed;
+    }
+
+    private boolean reindexMocks(MockIndex previous, Set<Class<?>> affectedTypes) {
+        Set<Class<?>> reindexedTypes = new HashSet<Class<?>>(affectedTypes);
+        int[] newSlots = newSlotsOf(previous.mocks);
+        for (Map.Entry<Class<?>, ClosestMocks> closest : previous.closestMocksByType.entrySet()) {
+            if (!reindexedTypes.contains(closest.getKey())) {
+                ClosestMocks moved = closest.getValue().moveTo(newSlots);
+                if (isNull(moved)) {
+                    reindexedTypes.add(closest.getKey());
+                } else {
+                    closestMocksByType.put(closest.getKey(), moved);
+                }
+            }
+        }
+        boolean allIndexed = true;
+        for (int slot = 0; slot < mocks.size(); slot++) {
+            Class<?> mockType = mocks.get(slot).getMockType();
+            if (isNull(mockType)) {
+                continue;
+            }
+            if (mockType.isArray()) {
+                allIndexed = false;
+            } else {
+                reindexMock(slot, mockType, reindexedTypes);
+            }
+        }
+        for (Class<?> type : reindexedTypes) {
+            ClosestMocks closest = closestMocksByType.get(type);
+            if (notNull(closest)) {
+                closest.trim();
+            }
+        }
+        return allIndexed;
+    }
+
+    private int[] newSlotsOf(List<MockHolder> previousMocks) {
+        Map<MockHolder, Integer> slotsByMock = getSlots();
+        int[] newSlots = new int[previousMocks.size()];
+        for (int slot = 0; slot < newSlots.length; slot++) {
+            Integer newSlot = slotsByMock.get(previousMocks.get(slot));
+            newSlots[slot] = isNull(newSlot) ? CandidateSet.NONE : newSlot;
+        }
+        return newSlots;
+    }
+
+    private void reindexMock(int slot, Class<?> mockType, Set<Class<?>> reindexedTypes) {
+        Map<Class<?>, Long> ranks = InheritanceDistances.ranksOf(mockType);
+        for (Class<?> type : reindexedTypes) {
+            if (type == Object.class) {
+                register(type, slot, objectRankOf(mockType, ranks));
+            } else if (ranks.containsKey(type)) {
+                register(type, slot, ranks.get(type));
+            }
+        }
+    }
+
+    private void indexMock(int slot, Class<?> type) {
+        Map<Class<?>, Long> ranks = InheritanceDistances.ranksOf(type);
+        for (Map.Entry<Class<?>, Long> supertype : ranks.entrySet()) {
+            register(supertype.getKey(), slot, supertype.getValue());
+        }
+        if (!ranks.containsKey(Object.class)) {
+            register(Object.class, slot, objectRankOf(type, ranks));
+        }
+    }
+
+    /**
+     * Returns the rank of {@code Object} from the type of a mock. The supertypes of an interface do not reach
+     * {@code Object}, so an interface, i.e. the declared type of a lazy mock, is ranked as unreached.
+     */
+    private static long objectRankOf(Class<?> type, Map<Class<?>, Long> ranks) {
+        Long rank = ranks.get(Object.class);
+        return notNull(rank) ? rank : InheritanceDistances.rank(type, Object.class);
+    }
+
+    private void register(Class<?> type, int slot, long rank) {
+        ClosestMocks closest = closestMocksByType.get(type);
+        if (isNull(closest) || rank < closest.rank) {
+            closestMocksByType.put(type, new ClosestMocks(rank, slot));
+        } else if (rank == closest.rank) {
+            closest.add(slot);
+        }
+    }
+
+    private static final class ClosestMocks {
+
+        private final long rank;
+        private int[] slots;
+        private int size;
+
+        private ClosestMocks(long rank, int slot) {
+            this(rank, new int[]{slot});
+        }
+
+        private ClosestMocks(long rank, int[] slots) {
+            this.rank = rank;
+            this.slots = slots;
+            this.size = slots.length;
+        }
+
+        /**
+         * Returns the same mocks at their new positions, or {@code null} if any of them is missing or the positions
+         * are not ascending any more.
+         */
+        private ClosestMocks moveTo(int[] newSlots) {
+            int[] moved = new int[size];
+            boolean unchanged = true;
+            for (int i = 0; i < size; i++) {
+                moved[i] = newSlots[slots[i]];
+                if (moved[i] == CandidateSet.NONE || (i > 0 && moved[i] <= moved[i - 1])) {
+                    return null;
+                }
+                unchanged &= moved[i] == slots[i];
+            }
+            return unchanged ? this : new ClosestMocks(rank, moved);
+        }
+
+        private void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        private void trim() {
+            if (size < slots.length) {
+                slots = Arrays.copyOf(slots, size);
+            }
+        }
+    }
+}
@@ -47,4 +47,53 @@ public interface MockSelector<T> {
      */
     List<MockHolder> selectByField(Field field, List<MockHolder> mocks);
 
+    /**
+     * Selects the mock from an indexed list of mocks. Selectors which can use the index override this method, the
+     * others select from the list of the indexed mocks.
+     * <p>
+     * @param selection the reference to compare in the implemented rule
+     * @param index index of the original list of mocks
+     * @return selected list of mocks
+     */
+    default List<MockHolder> select(T selection, MockIndex index) {
+        return select(selection, index.getMocks());
+    }
+
+    /**
+     * Selects the mock from an indexed list of mocks.
+     * <p>
+     * @param field with and attribute which will be the reference to compare in
+     * the implemented rule
+     * @param index index of the original list of mocks
+     * @return selected list of mocks
+     */
+    default List<MockHolder> selectByField(Field field, MockIndex index) {
+        return selectByField(field, index.getMocks());
+    }
+
+    /**
+     * Selects the mock from candidates taken from an indexed list of mocks, e.g. the result of a previous selector.
+     * <p>
+     * @param selection the reference to compare in the implemented rule
+     * @param candidates mocks of the indexed list to select from
+     * @param index index of the original list of mocks
+     * @return selected list of mocks
+     */
+    default List<MockHolder> select(T selection, List<MockHolder> candidates, MockIndex index) {
+        return select(selection, candidates);
+    }
+
+    /**
+     * Selects the mock from candidates taken from an indexed list of mocks, e.g. the result of a previous selector.
+     * <p>
+     * @param field with and attribute which will be the reference to compare in
+     * the implemented rule
+     * @param candidates mocks of the indexed list to select from
+     * @param index index of the original list of mocks
+     * @return selected list of mocks
+     */
+    default List<MockHolder> selectByField(Field field, List<MockHolder> candidates, MockIndex index) {
+        return selectByField(field, candidates);
+    }
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.mockannotations.MockHolder;
+import org.mockannotations.utils.CaseFolding;
+
+/**
+ * Index of the source names of an indexed list of mocks. It answers the questions of the built-in name selection
+ * strategies with hash lookups: the exact names and the case folded names are hashed, the names containing a string
+ * are found by the postings of the substrings of length one to three of the names.
+ * <p>
+ * Every method returns the matching positions of the mock list in ascending order.
+ * <p>
+ * @author Balazs Berkes
+ */
+final class NameIndex {
+
+    private static final int MAX_GRAM_LENGTH = 3;
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final String[] names;
+    private final Map<String, int[]> slotsByName;
+    private final Map<String, int[]> slotsByFoldedName;
+    private final Map<String, int[]> slotsByGram;
+    private final int[] nameLengths;
+
+    NameIndex(List<MockHolder> mocks) {
+        this.names = new String[mocks.size()];
+        Map<String, List<Integer>> byName = new HashMap<String, List<Integer>>();
+        Map<String, List<Integer>> byFoldedName = new HashMap<String, List<Integer>>();
+        Map<String, List<Integer>> byGram = new HashMap<String, List<Integer>>();
+        Set<Integer> lengths = new TreeSet<Integer>();
+        for (int slot = 0; slot < names.length; slot++) {
+            String name = mocks.get(slot).getSourceName();
+            names[slot] = name;
+            post(byName, name, slot);
+            post(byFoldedName, mocks.get(slot).getFoldedSourceName(), slot);
+            for (String gram : gramsOf(name)) {
+                post(byGram, gram, slot);
+            }
+            lengths.add(name.length());
+        }
+        this.slotsByName = toSlots(byName);
+        this.slotsByFoldedName = toSlots(byFoldedName);
+        this.slotsByGram = toSlots(byGram);
+        this.nameLengths = toArray(lengths);
+    }
+
+    /**
+     * Finds the mocks which have the same name as the target.
+     */
+    int[] equalTo(String targetName) {
+        int[] slots = slotsByName.get(targetName);
+        return isNull(slots) ? NO_SLOTS : slots;
+    }
+
+    /**
+     * Finds the mocks which have the same name as the target ignoring the case.
+     */
+    int[] equalToIgnoreCase(String targetName) {
+        int[] candidates = slotsByFoldedName.get(CaseFolding.fold(targetName));
+        int[] slots = NO_SLOTS;
+        if (!isNull(candidates)) {
+            slots = new int[candidates.length];
+            int found = 0;
+            for (int slot : candidates) {
+                if (targetName.equalsIgnoreCase(names[slot])) {
+                    slots[found++] = slot;
+                }
+            }
+            slots = Arrays.copyOf(slots, found);
+        }
+        return slots;
+    }
+
+    /**
+     * Finds the mocks whose name contains the target or which have a name contained by the target.
+     */
+    int[] containing(String targetName) {
+        Set<Integer> slots = new TreeSet<Integer>();
+        collectNamesContainedBy(targetName, slots);
+        collectNamesContaining(targetName, slots);
+        return toArray(slots);
+    }
+
+    private void collectNamesContainedBy(String targetName, Set<Integer> slots) {
+        Set<String> visited = new HashSet<String>();
+        for (int length : nameLengths) {
+            if (length > targetName.length()) {
+                break;
+            }
+            for (int start = 0; start + length <= targetName.length(); start++) {
+                String part = targetName.substring(start, start + length);
+                if (visited.add(part)) {
+                    addAll(slotsByName.get(part), slots);
+                }
+            }
+        }
+    }
+
+    private void collectNamesContaining(String targetName, Set<Integer> slots) {
+        if (targetName.isEmpty()) {
+            for (int slot = 0; slot < names.length; slot++) {
+                slots.add(slot);
+            }
+        } else if (targetName.length() <= MAX_GRAM_LENGTH) {
+            addAll(slotsByGram.get(targetName), slots);
+        } else {
+            for (int slot : rarestGramOf(targetName)) {
+                if (names[slot].contains(targetName)) {
+                    slots.add(slot);
+                }
+            }
+        }
+    }
+
+    private int[] rarestGramOf(String targetName) {
+        int[] rarest = null;
+        for (int start = 0; start + MAX_GRAM_LENGTH <= targetName.length(); start++) {
+            int[] postings = slotsByGram.get(targetName.substring(start, start + MAX_GRAM_LENGTH));
+            if (isNull(postings)) {
+                return NO_SLOTS;
+            }
+            if (isNull(rarest) || postings.length < rarest.length) {
+                rarest = postings;
+            }
+        }
+        return rarest;
+    }
+
+    private static Set<String> gramsOf(String name) {
+        Set<String> grams = new HashSet<String>();
+        for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+            for (int start = 0; start + length <= name.length(); start++) {
+                grams.add(name.substring(start, start + length));
+            }
+        }
+        return grams;
+    }
+
+    private static void post(Map<String, List<Integer>> postings, String key, int slot) {
+        List<Integer> slots = postings.get(key);
+        if (isNull(slots)) {
+            slots = new ArrayList<Integer>(1);
+            postings.put(key, slots);
+        }
+        slots.add(slot);
+    }
+
+    private static Map<String, int[]> toSlots(Map<String, List<Integer>> postings) {
+        Map<String, int[]> slots = new HashMap<String, int[]>(postings.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+            slots.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return slots;
+    }
+
+    private static int[] toArray(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<Integer>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static void addAll(int[] values, Set<Integer> slots) {
+        if (!isNull(values)) {
+            for (int value : values) {
+                slots.add(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.mockannotations.selection.ByNameSelector.SelectionStrategy;
+
+/**
+ * Immutable, ordered configuration of the name {@link SelectionStrategy strategies}. The first strategy has the
+ * highest priority. The configuration is a value: it can be shared between threads and injectors without
+ * synchronization, and two configurations of the same strategies in the same order are equal.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class SelectionStrategies implements Iterable<SelectionStrategy> {
+
+    private final List<SelectionStrategy> strategies;
+
+    /**
+     * Creates the configuration of the given strategies.
+     * <p>
+     * @param strategies the strategies in priority order
+     * @return new configuration
+     */
+    public static SelectionStrategies of(SelectionStrategy... strategies) {
+        assertNotNull(strategies, "Strategies cannot be null!");
+        List<SelectionStrategy> copy = new ArrayList<SelectionStrategy>(strategies.length);
+        for (SelectionStrategy strategy : strategies) {
+            assertNotNull(strategy, "Strategy cannot be null!");
+            copy.add(strategy);
+        }
+        return new SelectionStrategies(Collections.unmodifiableList(copy));
+    }
+
+    private SelectionStrategies(List<SelectionStrategy> strategies) {
+        this.strategies = strategies;
+    }
+
+    /**
+     * Returns the strategies.
+     * <p>
+     * @return unmodifiable {@code List<SelectionStrategy>} in priority order
+     */
+    public List<SelectionStrategy> asList() {
+        return strategies;
+    }
+
+    public int size() {
+        return strategies.size();
+    }
+
+    @Override
+    public Iterator<SelectionStrategy> iterator() {
+        return strategies.iterator();
+    }
+
+    @Override
+    public int hashCode() {
+        return strategies.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj
+                || obj instanceof SelectionStrategies && strategies.equals(((SelectionStrategies) obj).strategies);
+    }
+
+    @Override
+    public String toString() {
+        return "SelectionStrategies" + strategies;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mockannotations.MockHolder;
+import org.mockannotations.utils.InheritanceDistances;
+import org.mockannotations.utils.TypeIds;
+import org.mockannotations.utils.TypeIds.TypeId;
+
+/**
+ * Packed matrix of the inheritance ranks between the target types and the types of a list of mocks. The distinct
+ * mock types are the columns, a row holds the {@link InheritanceDistances#packedRank(Class, Class) packed ranks} of
+ * every column from one target type. The rows are computed on the first lookup of the target type and are held in a
+ * small open addressing table keyed by the {@link TypeIds id} of the type, so the closest mocks are resolved by
+ * primitive array reads and the table grows with the target types looked up in this matrix only.
+ * <p>
+ * The matrix is thread-safe: the table is copied on write and published through a volatile field, a row is computed
+ * at most a few times.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class TypeRankMatrix {
+
+    /**
+     * Rank of a mock which is not an instance of the target type.
+     */
+    public static final int NOT_ASSIGNABLE = InheritanceDistances.NOT_ASSIGNABLE;
+
+    private static final int NO_COLUMN = -1;
+
+    private final Class<?>[] columnTypes;
+    private final int[] columnOfSlot;
+    private volatile RowTable rows = RowTable.EMPTY;
+
+    /**
+     * Creates the matrix of the types of the given mocks.
+     * <p>
+     * @param mocks the mocks, the positions of the list are the slots of the matrix
+     * @return new matrix without computed rows
+     */
+    public static TypeRankMatrix of(List<MockHolder> mocks) {
+        Map<Class<?>, Integer> columns = new HashMap<Class<?>, Integer>();
+        List<Class<?>> columnTypes = new ArrayList<Class<?>>();
+        int[] columnOfSlot = new int[mocks.size()];
+        for (int slot = 0; slot < columnOfSlot.length; slot++) {
+            Class<?> mockType = mocks.get(slot).getMockType();
+            if (isNull(mockType)) {
+                columnOfSlot[slot] = NO_COLUMN;
+                continue;
+            }
+            Integer column = columns.get(mockType);
+            if (isNull(column)) {
+                column = columnTypes.size();
+                columns.put(mockType, column);
+                columnTypes.add(mockType);
+            }
+            columnOfSlot[slot] = column;
+        }
+        return new TypeRankMatrix(columnTypes.toArray(new Class<?>[columnTypes.size()]), columnOfSlot);
+    }
+
+    private TypeRankMatrix(Class<?>[] columnTypes, int[] columnOfSlot) {
+        this.columnTypes = columnTypes;
+        this.columnOfSlot = columnOfSlot;
+    }
+
+    /**
+     * Returns the number of slots, i.e. the size of the list of mocks.
+     */
+    public int size() {
+        return columnOfSlot.length;
+    }
+
+    /**
+     * Determines the packed rank of the target type from the mock of the slot.
+     * <p>
+     * @param target the target type
+     * @param slot position of the mock
+     * @return the packed rank, the lower the closer, or {@link #NOT_ASSIGNABLE}
+     */
+    public int rank(Class<?> target, int slot) {
+        return rankOf(rowOf(target), slot);
+    }
+
+    /**
+     * Determines the positions of the mocks which are the closest to the target type.
+     * <p>
+     * @param target the target type
+     * @return new array of the positions in ascending order, empty if none of the mocks is an instance of the type
+     */
+    public int[] closestSlots(Class<?> target) {
+        int[] row = rowOf(target);
+        int[] closest = new int[columnOfSlot.length];
+        int size = 0;
+        int closestRank = Integer.MAX_VALUE;
+        for (int slot = 0; slot < columnOfSlot.length; slot++) {
+            int rank = rankOf(row, slot);
+            if (rank == NOT_ASSIGNABLE || rank > closestRank) {
+                continue;
+            }
+            if (rank < closestRank) {
+                closestRank = rank;
+                size = 0;
+            }
+            closest[size++] = slot;
+        }
+        return Arrays.copyOf(closest, size);
+    }
+
+    /**
+     * Determines the position of the first mock which is the closest to the target type.
+     * <p>
+     * @param target the target type
+     * @return the position or {@link CandidateSet#NONE} if none of the mocks is an instance of the type
+     */
+    public int closestSlot(Class<?> target) {
+        int[] row = rowOf(target);
+        int closest = CandidateSet.NONE;
+        int closestRank = Integer.MAX_VALUE;
+        for (int slot = 0; slot < columnOfSlot.length; slot++) {
+            int rank = rankOf(row, slot);
+            if (rank != NOT_ASSIGNABLE && rank < closestRank) {
+                closestRank = rank;
+                closest = slot;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Keeps only the candidates which are the closest to the target type.
+     * <p>
+     * @param target the target type
+     * @param candidates positions of the mocks to select from
+     */
+    public void retainClosest(Class<?> target, CandidateSet candidates) {
+        int[] row = rowOf(target);
+        int closestRank = Integer.MAX_VALUE;
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            int rank = rankOf(row, slot);
+            if (rank != NOT_ASSIGNABLE && rank < closestRank) {
+                closestRank = rank;
+            }
+        }
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            if (rankOf(row, slot) != closestRank) {
+                candidates.remove(slot);
+            }
+        }
+    }
+
+    private int rankOf(int[] row, int slot) {
+        int column = columnOfSlot[slot];
+        return column == NO_COLUMN ? NOT_ASSIGNABLE : row[column];
+    }
+
+    private int[] rowOf(Class<?> target) {
+        TypeId id = TypeIds.of(target);
+        int[] row = rows.get(id);
+        if (isNull(row)) {
+            row = computeRow(target);
+            store(id, row);
+        }
+        return row;
+    }
+
+    private int[] computeRow(Class<?> target) {
+        int[] row = new int[columnTypes.length];
+        for (int column = 0; column < row.length; column++) {
+            row[column] = InheritanceDistances.packedRank(columnTypes[column], target);
+        }
+        return row;
+    }
+
+    private synchronized void store(TypeId id, int[] row) {
+        if (isNull(rows.get(id))) {
+            rows = rows.with(id, row);
+        }
+    }
+
+    /**
+     * Immutable open addressing table of the rows keyed by type id, with linear probing. The table holds the ids, so
+     * their values are not reclaimed for other types while the matrix is in use.
+     */
+    private static final class RowTable {
+
+        private static final RowTable EMPTY = new RowTable(new TypeId[4], new int[4][], 0);
+
+        private final TypeId[] keys;
+        private final int[][] rows;
+        private final int size;
+
+        private RowTable(TypeId[] keys, int[][] rows, int size) {
+            this.keys = keys;
+            this.rows = rows;
+            this.size = size;
+        }
+
+        private int[] get(TypeId id) {
+            int mask = keys.length - 1;
+            for (int index = hash(id) & mask; notNull(keys[index]); index = (index + 1) & mask) {
+                if (keys[index] == id) {
+                    return rows[index];
+                }
+            }
+            return null;
+        }
+
+        private RowTable with(TypeId id, int[] row) {
+            int capacity = (size + 1) * 2 > keys.length ? keys.length * 2 : keys.length;
+            RowTable table = new RowTable(new TypeId[capacity], new int[capacity][], size + 1);
+            for (int index = 0; index < keys.length; index++) {
+                if (notNull(keys[index])) {
+                    table.put(keys[index], rows[index]);
+                }
+            }
+            table.put(id, row);
+            return table;
+        }
+
+        private void put(TypeId id, int[] row) {
+            int mask = keys.length - 1;
+            int index = hash(id) & mask;
+            while (notNull(keys[index])) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = id;
+            rows[index] = row;
+        }
+
+        private static int hash(TypeId id) {
+            return id.value() * 0x9E3779B9 >>> 16;
+        }
+    }
+}
@@ -15,19 +15,17 @@
  */
 package org.mockannotations.utils;
 
-import static org.mockannotations.utils.MockAnnotationReflectionUtils.getAllDeclaredFields;
 import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
- * Class which scans the fields for the annotation passed as generic parameter.
+ * Class which scans the fields for the annotation passed as generic parameter. Both the scanner instances and the
+ * scan results are held by {@link ClassValue}s, so lookups do not block and class loaders can still be collected.
  * <p>
  * @param <A> type of the annotation
  * <p>
@@ -35,10 +33,22 @@ import java.util.Map;
  */
 public class AnnotationScanner<A extends Annotation> {
 
-    private final static Map<Class<? extends Annotation>, AnnotationScanner<?>> scanners
-            = new HashMap<Class<? extends Annotation>, AnnotationScanner<?>>();
+    private final static ClassValue<AnnotationScanner<?>> scanners = new ClassValue<AnnotationScanner<?>>() {
+
+        @Override
+        protected AnnotationScanner<?> computeValue(Class<?> type) {
+            return createScanner(type.asSubclass(Annotation.class));
+        }
+    };
 
     private final Class<A> annotation;
+    private final ClassValue<List<Field>> scanResults = new ClassValue<List<Field>>() {
+
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            return doScan(type);
+        }
+    };
 
     /**
      * Provides a singleton instance of {@code AnnotationScanner} of {@literal T}.
@@ -47,17 +57,17 @@ public class AnnotationScanner<A extends Annotation> {
      * @param annotation class of the scanned annotation.
      * @return the scanner for desired annotation
      */
-    public static synchronized <T extends Annotation> AnnotationScanner<T> getScanner(Class<T> annotation) {
-        AnnotationScanner<T> scanner;
-        if (scanners.containsKey(annotation)) {
-            scanner = (AnnotationScanner<T>) scanners.get(annotation);
-        } else {
-            scanner = new AnnotationScanner<T>(annotation);
-            scanners.put(annotation, scanner);
-        }
+    public static <T extends Annotation> AnnotationScanner<T> getScanner(Class<T> annotation) {
+        // the registry creates the scanner of an annotation from the same class it is looked up by
+        @SuppressWarnings("unchecked")
+        AnnotationScanner<T> scanner = (AnnotationScanner<T>) scanners.get(annotation);
         return scanner;
     }
 
+    private static <T extends Annotation> AnnotationScanner<T> createScanner(Class<T> annotation) {
+        return new AnnotationScanner<T>(annotation);
+    }
+
     /**
      * Scans the fields of a {@code Object} for a specific annotation given as generic parameter.
      * <p>
@@ -74,21 +84,26 @@ public class AnnotationScanner<A extends Annotation> {
     }
 
     /**
-     * Scans the fields of a {@code Class} for a specific annotation given as generic parameter.
+     * Scans the fields of a {@code Class} for a specific annotation given as generic parameter. The fields are
+     * looked up once per class, every call returns a new copy of them.
      * <p>
      * @param clazz class to scan
      * @return list of fields which annotated with the scanner's annotation
      */
     public List<Field> scan(Class<?> clazz) {
+        return new ArrayList<Field>(scanResults.get(clazz));
+    }
+
+    private List<Field> doScan(Class<?> clazz) {
         List<Field> annotatedFields = new ArrayList<Field>();
 
-        for (Field field : getAllDeclaredFields(clazz)) {
+        for (Field field : ClassMetadata.forClass(clazz).getFields()) {
             if (field.isAnnotationPresent(annotation)) {
                 annotatedFields.add(field);
             }
         }
 
-        return annotatedFields;
+        return Collections.unmodifiableList(annotatedFields);
     }
 
     AnnotationScanner(Class<A> annotation) {
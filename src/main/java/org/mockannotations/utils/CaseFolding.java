@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+/**
+ * Case folding of names consistent with {@link String#equalsIgnoreCase(String)}: two names are equal ignoring the
+ * case exactly when their folded forms are equal, so names can be compared ignoring the case by hash lookups.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class CaseFolding {
+
+    /**
+     * Folds the case of the given name.
+     * <p>
+     * @param name the name to fold
+     * @return the folded name
+     */
+    public static String fold(String name) {
+        StringBuilder folded = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            folded.append(Character.toLowerCase(Character.toUpperCase(name.charAt(i))));
+        }
+        return folded.toString();
+    }
+
+    private CaseFolding() {
+    }
+}
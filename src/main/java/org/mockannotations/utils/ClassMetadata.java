@@ -0,0 +1,266 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static java.lang.reflect.Modifier.isFinal;
+import static java.lang.reflect.Modifier.isStatic;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cached reflection metadata of a class. The metadata is computed once per class and it is held by a
+ * {@link ClassValue}, so repeated lookups of the same class do not touch the reflection API and the class loader of
+ * the class can still be collected.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class ClassMetadata {
+
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final List<Field> fields;
+    private final List<FieldMetadata> writableFields;
+    private final Map<Field, FieldMetadata> declaredFields;
+    private volatile List<SetterDescriptor> setters;
+
+    /**
+     * Provides the metadata of the given class.
+     * <p>
+     * @param clazz the class to describe
+     * @return the cached metadata of the class
+     */
+    public static ClassMetadata forClass(Class<?> clazz) {
+        return METADATA.get(clazz);
+    }
+
+    /**
+     * Provides the metadata of the given field.
+     * <p>
+     * @param field the field to describe
+     * @return the cached metadata of the field
+     */
+    public static FieldMetadata forField(Field field) {
+        return forClass(field.getDeclaringClass()).getFieldMetadata(field);
+    }
+
+    private ClassMetadata(Class<?> type) {
+        this.type = type;
+        this.declaredFields = describeDeclaredFields(type);
+        this.fields = collectFields(type);
+        this.writableFields = collectWritableFields(type);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the fields of the class and all its predecessors (up to {@code Object}).
+     * <p>
+     * @return unmodifiable {@code List<Field>} of the class and all it predecessors
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the metadata of the fields which can be injected, i.e. the non-static and non-final fields of the class
+     * and all its predecessors, in the order of {@link #getFields()}.
+     * <p>
+     * @return unmodifiable {@code List<FieldMetadata>} of the writable fields
+     */
+    public List<FieldMetadata> getWritableFields() {
+        return writableFields;
+    }
+
+    /**
+     * Returns the descriptors of the public, non-static setters of the class. The descriptors are computed on the
+     * first call.
+     * <p>
+     * @return unmodifiable {@code List<SetterDescriptor>} of the class
+     */
+    public List<SetterDescriptor> getSetters() {
+        List<SetterDescriptor> descriptors = setters;
+        if (isNull(descriptors)) {
+            descriptors = describeSetters(type);
+            setters = descriptors;
+        }
+        return descriptors;
+    }
+
+    /**
+     * Returns the metadata of a field declared by this class.
+     * <p>
+     * @param field field declared by this class
+     * @return the metadata of the field
+     */
+    public FieldMetadata getFieldMetadata(Field field) {
+        FieldMetadata metadata = declaredFields.get(field);
+        if (isNull(metadata)) {
+            metadata = new FieldMetadata(field);
+        }
+        return metadata;
+    }
+
+    private static Map<Field, FieldMetadata> describeDeclaredFields(Class<?> type) {
+        Map<Field, FieldMetadata> metadata = new LinkedHashMap<Field, FieldMetadata>();
+        for (Field field : type.getDeclaredFields()) {
+            metadata.put(field, new FieldMetadata(field));
+        }
+        return metadata;
+    }
+
+    private static List<SetterDescriptor> describeSetters(Class<?> type) {
+        List<SetterDescriptor> descriptors = new ArrayList<SetterDescriptor>();
+        for (Method setter : MockAnnotationReflectionUtils.getAllSetters(type)) {
+            descriptors.add(new SetterDescriptor(setter));
+        }
+        return Collections.unmodifiableList(descriptors);
+    }
+
+    private List<Field> collectFields(Class<?> type) {
+        List<Field> allFields = new ArrayList<Field>();
+        if (isScanned(type)) {
+            for (FieldMetadata metadata : declaredFields.values()) {
+                allFields.add(metadata.getField());
+            }
+            Class<?> predecessor = type.getSuperclass();
+            if (isScanned(predecessor)) {
+                allFields.addAll(forClass(predecessor).getFields());
+            }
+        }
+        return Collections.unmodifiableList(allFields);
+    }
+
+    private List<FieldMetadata> collectWritableFields(Class<?> type) {
+        List<FieldMetadata> writable = new ArrayList<FieldMetadata>();
+        if (isScanned(type)) {
+            for (FieldMetadata metadata : declaredFields.values()) {
+                if (metadata.isWritable()) {
+                    writable.add(metadata);
+                }
+            }
+            Class<?> predecessor = type.getSuperclass();
+            if (isScanned(predecessor)) {
+                writable.addAll(forClass(predecessor).getWritableFields());
+            }
+        }
+        return Collections.unmodifiableList(writable);
+    }
+
+    private static boolean isScanned(Class<?> type) {
+        return !isNull(type) && !Object.class.equals(type);
+    }
+
+    /**
+     * Cached metadata of a field. The modifiers are checked once, the access is granted only once and the
+     * {@link FieldAccessor} is resolved only once.
+     */
+    public static final class FieldMetadata {
+
+        private final Field field;
+        private final boolean writable;
+        private volatile boolean accessible;
+        private volatile CachedAccessor accessor;
+        private volatile GenericSignature genericSignature;
+
+        private FieldMetadata(Field field) {
+            this.field = field;
+            this.writable = !isStatic(field.getModifiers()) && !isFinal(field.getModifiers());
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Determines whether the field can be injected, that is the field is neither static nor final.
+         * <p>
+         * @return {@code true} if the field can be written
+         */
+        public boolean isWritable() {
+            return writable;
+        }
+
+        /**
+         * Returns the interned signature of the generic parameters of the field type.
+         * <p>
+         * @return the cached signature
+         */
+        public GenericSignature getGenericSignature() {
+            GenericSignature signature = genericSignature;
+            if (isNull(signature)) {
+                signature = GenericSignature.of(field);
+                genericSignature = signature;
+            }
+            return signature;
+        }
+
+        /**
+         * Returns the field with suppressed access checks.
+         * <p>
+         * @return the accessible field
+         */
+        public Field getAccessibleField() {
+            if (!accessible) {
+                field.setAccessible(true);
+                accessible = true;
+            }
+            return field;
+        }
+
+        /**
+         * Returns the accessor of the field created by the active {@link FieldAccessorFactory}.
+         * <p>
+         * @return the cached accessor
+         */
+        public FieldAccessor getAccessor() {
+            FieldAccessorFactory factory = FieldAccessors.getFactory();
+            CachedAccessor cached = accessor;
+            if (isNull(cached) || cached.factory != factory) {
+                cached = new CachedAccessor(factory, factory.createAccessor(field));
+                accessor = cached;
+            }
+            return cached.accessor;
+        }
+    }
+
+    private static final class CachedAccessor {
+
+        private final FieldAccessorFactory factory;
+        private final FieldAccessor accessor;
+
+        private CachedAccessor(FieldAccessorFactory factory, FieldAccessor accessor) {
+            this.factory = factory;
+            this.accessor = accessor;
+        }
+    }
+}
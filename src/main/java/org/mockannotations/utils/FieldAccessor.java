@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import java.lang.reflect.Field;
+
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToReadFieldException;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+
+/**
+ * Reads and writes one specific field. Accessors are resolved once per field by a {@link FieldAccessorFactory} and
+ * cached by {@link ClassMetadata}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public interface FieldAccessor {
+
+    /**
+     * Returns the accessed field.
+     * <p>
+     * @return the field
+     */
+    Field getField();
+
+    /**
+     * Sets the field of the target object to the given value.
+     * <p>
+     * @param target object with field to set
+     * @param value value which will be used for the field
+     * <p>
+     * @throws UnableToWriteFieldException when setting the field failed
+     */
+    void set(Object target, Object value) throws UnableToWriteFieldException;
+
+    /**
+     * Returns the value of the field in the target object.
+     * <p>
+     * @param target object which contains the field
+     * @return the value of the field
+     * <p>
+     * @throws UnableToReadFieldException when reading the field failed
+     */
+    Object get(Object target) throws UnableToReadFieldException;
+}
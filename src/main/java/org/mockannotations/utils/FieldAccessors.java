@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.assertNotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToReadFieldException;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+
+/**
+ * Provides the built-in {@link FieldAccessorFactory} implementations and holds the active one.
+ * <p>
+ * By default fields are accessed through {@link MethodHandle}s which are resolved once per field, so the writes go
+ * through call sites the JIT compiler can inline. When the access to a field cannot be granted (e.g. because module
+ * rules forbid it) the factory falls back to plain reflection.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class FieldAccessors {
+
+    /**
+     * Creates accessors which use {@link Field#set(Object, Object)} and {@link Field#get(Object)}.
+     */
+    public static final FieldAccessorFactory REFLECTION_FACTORY = new ReflectionFieldAccessorFactory();
+    /**
+     * Creates accessors which use {@link MethodHandle}s and falls back to reflection when it is not possible.
+     */
+    public static final FieldAccessorFactory METHOD_HANDLE_FACTORY = new MethodHandleFieldAccessorFactory();
+
+    private static volatile FieldAccessorFactory factory = METHOD_HANDLE_FACTORY;
+
+    /**
+     * Returns the active factory.
+     * <p>
+     * @return the active factory
+     */
+    public static FieldAccessorFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Replaces the active factory. Accessors created by the previous factory are dropped on their next use.
+     * <p>
+     * @param accessorFactory the new factory
+     */
+    public static void setFactory(FieldAccessorFactory accessorFactory) {
+        assertNotNull(accessorFactory, "Field accessor factory cannot be null!");
+        factory = accessorFactory;
+    }
+
+    private static class ReflectionFieldAccessorFactory implements FieldAccessorFactory {
+
+        @Override
+        public FieldAccessor createAccessor(Field field) {
+            return new ReflectionFieldAccessor(field);
+        }
+    }
+
+    private static class MethodHandleFieldAccessorFactory implements FieldAccessorFactory {
+
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        @Override
+        public FieldAccessor createAccessor(Field field) {
+            FieldAccessor accessor;
+            try {
+                Field accessibleField = ClassMetadata.forField(field).getAccessibleField();
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle setter = lookup.unreflectSetter(accessibleField).asType(SETTER_TYPE);
+                MethodHandle getter = lookup.unreflectGetter(accessibleField).asType(GETTER_TYPE);
+                accessor = new MethodHandleFieldAccessor(accessibleField, setter, getter);
+            } catch (Exception ex) {
+                accessor = REFLECTION_FACTORY.createAccessor(field);
+            }
+            return accessor;
+        }
+    }
+
+    private static class ReflectionFieldAccessor implements FieldAccessor {
+
+        private final Field field;
+
+        ReflectionFieldAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public Field getField() {
+            return field;
+        }
+
+        @Override
+        public void set(Object target, Object value) throws UnableToWriteFieldException {
+            try {
+                ClassMetadata.forField(field).getAccessibleField().set(target, value);
+            } catch (Exception ex) {
+                throw new UnableToWriteFieldException(field, ex);
+            }
+        }
+
+        @Override
+        public Object get(Object target) throws UnableToReadFieldException {
+            try {
+                return ClassMetadata.forField(field).getAccessibleField().get(target);
+            } catch (Exception ex) {
+                throw new UnableToReadFieldException(field, ex);
+            }
+        }
+    }
+
+    private static class MethodHandleFieldAccessor implements FieldAccessor {
+
+        private final Field field;
+        private final MethodHandle setter;
+        private final MethodHandle getter;
+
+        MethodHandleFieldAccessor(Field field, MethodHandle setter, MethodHandle getter) {
+            this.field = field;
+            this.setter = setter;
+            this.getter = getter;
+        }
+
+        @Override
+        public Field getField() {
+            return field;
+        }
+
+        @Override
+        public void set(Object target, Object value) throws UnableToWriteFieldException {
+            try {
+                setter.invokeExact(target, value);
+            } catch (Throwable ex) {
+                throw new UnableToWriteFieldException(field, ex);
+            }
+        }
+
+        @Override
+        public Object get(Object target) throws UnableToReadFieldException {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable ex) {
+                throw new UnableToReadFieldException(field, ex);
+            }
+        }
+    }
+
+    private FieldAccessors() {
+    }
+}
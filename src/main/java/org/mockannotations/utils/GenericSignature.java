@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical, immutable list of the generic parameters of a type. Signatures are interned: equal lists of generic
+ * parameters are represented by the same instance, so two signatures match exactly when they are the same reference.
+ * <p>
+ * The interned signatures are weakly referenced, they do not keep the classes of their parameters loaded.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class GenericSignature {
+
+    /**
+     * The signature of the types which are not parameterized.
+     */
+    public static final GenericSignature NONE = new GenericSignature(new Type[0]);
+
+    private static final Map<GenericSignature, WeakReference<GenericSignature>> interned
+            = new WeakHashMap<GenericSignature, WeakReference<GenericSignature>>();
+
+    private final Parameters parameters;
+    private final int hash;
+
+    /**
+     * Provides the signature of the generic type of the field.
+     * <p>
+     * @param field field to be described
+     * @return the interned signature
+     */
+    public static GenericSignature of(Field field) {
+        return of(field.getGenericType());
+    }
+
+    /**
+     * Provides the signature of the type, {@link #NONE} if it is not a {@link ParameterizedType}.
+     * <p>
+     * @param type type to be described
+     * @return the interned signature
+     */
+    public static GenericSignature of(Type type) {
+        GenericSignature signature = NONE;
+        if (type instanceof ParameterizedType) {
+            signature = intern(((ParameterizedType) type).getActualTypeArguments().clone());
+        }
+        return signature;
+    }
+
+    /**
+     * Provides the signature of the list of generic parameters. The lists returned by {@link #getParameters()} are
+     * resolved without a lookup.
+     * <p>
+     * @param parameters generic parameters in declaration order
+     * @return the interned signature
+     */
+    public static GenericSignature of(List<Type> parameters) {
+        GenericSignature signature;
+        if (parameters instanceof Parameters) {
+            signature = ((Parameters) parameters).signature;
+        } else if (parameters.isEmpty()) {
+            signature = NONE;
+        } else {
+            signature = intern(parameters.toArray(new Type[parameters.size()]));
+        }
+        return signature;
+    }
+
+    private static GenericSignature intern(Type[] parameters) {
+        GenericSignature signature = NONE;
+        if (parameters.length > 0) {
+            GenericSignature candidate = new GenericSignature(parameters);
+            synchronized (interned) {
+                WeakReference<GenericSignature> reference = interned.get(candidate);
+                signature = isNull(reference) ? null : reference.get();
+                if (isNull(signature)) {
+                    signature = candidate;
+                    interned.put(signature, new WeakReference<GenericSignature>(signature));
+                }
+            }
+        }
+        return signature;
+    }
+
+    private GenericSignature(Type[] parameters) {
+        this.parameters = new Parameters(this, parameters);
+        this.hash = Arrays.hashCode(parameters);
+    }
+
+    /**
+     * Returns the generic parameters.
+     * <p>
+     * @return unmodifiable {@code List<Type>} of the parameters
+     */
+    public List<Type> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Determines whether the two signatures have the same generic parameters in the same order.
+     * <p>
+     * @param other interned signature to compare
+     * @return {@code true} if the signatures are matching
+     */
+    public boolean matches(GenericSignature other) {
+        return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        boolean equals = this == obj;
+        if (!equals && obj instanceof GenericSignature) {
+            GenericSignature other = (GenericSignature) obj;
+            equals = hash == other.hash && Arrays.equals(parameters.types, other.parameters.types);
+        }
+        return equals;
+    }
+
+    @Override
+    public String toString() {
+        return "GenericSignature" + parameters;
+    }
+
+    private static final class Parameters extends AbstractList<Type> implements RandomAccess {
+
+        private final GenericSignature signature;
+        private final Type[] types;
+
+        private Parameters(GenericSignature signature, Type[] types) {
+            this.signature = signature;
+            this.types = types;
+        }
+
+        @Override
+        public Type get(int index) {
+            return types[index];
+        }
+
+        @Override
+        public int size() {
+            return types.length;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Cached inheritance distances. The supertypes of a class are walked breadth-first once, following both the
+ * superclass and the implemented interfaces, and the distance of every supertype is kept in a table held by a
+ * {@link ClassValue}, so lookups are constant time and the tables do not prevent unloading the classes.
+ * <p>
+ * The distance is the least number of steps from the class to the supertype. Supertypes which are assignable but not
+ * reachable by these steps (array covariance, {@code Object} of an interface) are at distance {@code 1}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class InheritanceDistances {
+
+    public static final int NOT_ASSIGNABLE = -1;
+
+    /**
+     * The largest distance which is kept by {@link #packedRank(Class, Class)}, larger distances are capped.
+     */
+    public static final int MAX_PACKED_DISTANCE = 0x7FFF;
+
+    private static final int UNREACHED_DISTANCE = 1;
+    private static final int MAX_PACKED_TIE_BREAKER = 0xFFFF;
+
+    private static final ClassValue<Map<Class<?>, Long>> ranks = new ClassValue<Map<Class<?>, Long>>() {
+
+        @Override
+        protected Map<Class<?>, Long> computeValue(Class<?> type) {
+            return computeRanks(type);
+        }
+    };
+
+    /**
+     * Determines the distance of the class to the supertype in the inheritance tree.
+     * <p>
+     * @param type the class to start from
+     * @param supertype the class or interface to determine the distance to
+     * @return the distance or {@link #NOT_ASSIGNABLE} if the type is not a subtype of the supertype
+     */
+    public static int distance(Class<?> type, Class<?> supertype) {
+        long rank = rank(type, supertype);
+        return rank == NOT_ASSIGNABLE ? NOT_ASSIGNABLE : (int) (rank >>> Integer.SIZE);
+    }
+
+    /**
+     * Determines the rank of the supertype from the class, the lower the closer. The rank is ordered by the distance
+     * first. Interfaces at the same distance are ordered by the depth of the class in the class hierarchy, preferring
+     * the less specialized class.
+     * <p>
+     * @param type the class to start from
+     * @param supertype the class or interface to rank
+     * @return the rank or {@link #NOT_ASSIGNABLE} if the type is not a subtype of the supertype
+     */
+    public static long rank(Class<?> type, Class<?> supertype) {
+        long rank = NOT_ASSIGNABLE;
+        Long cached = ranks.get(type).get(supertype);
+        if (!isNull(cached)) {
+            rank = cached;
+        } else if (supertype.isAssignableFrom(type)) {
+            rank = rankOf(UNREACHED_DISTANCE, 0);
+        }
+        return rank;
+    }
+
+    /**
+     * Determines the rank of the supertype from the class packed into an {@code int}: the distance is kept in the
+     * upper and the tie breaker in the lower 16 bits. The packed ranks are ordered like the ranks of
+     * {@link #rank(Class, Class)} as long as the distance is not above {@link #MAX_PACKED_DISTANCE}.
+     * <p>
+     * @param type the class to start from
+     * @param supertype the class or interface to rank
+     * @return the packed rank or {@link #NOT_ASSIGNABLE} if the type is not a subtype of the supertype
+     */
+    public static int packedRank(Class<?> type, Class<?> supertype) {
+        long rank = rank(type, supertype);
+        if (rank == NOT_ASSIGNABLE) {
+            return NOT_ASSIGNABLE;
+        }
+        long distance = Math.min(rank >>> Integer.SIZE, MAX_PACKED_DISTANCE);
+        long tieBreaker = Math.min(rank & 0xFFFFFFFFL, MAX_PACKED_TIE_BREAKER);
+        return (int) (distance << Short.SIZE | tieBreaker);
+    }
+
+    /**
+     * Returns the ranks of all the supertypes reachable from the class.
+     * <p>
+     * @param type the class to start from
+     * @return unmodifiable map of the supertypes to their ranks
+     */
+    public static Map<Class<?>, Long> ranksOf(Class<?> type) {
+        return ranks.get(type);
+    }
+
+    private static Map<Class<?>, Long> computeRanks(Class<?> type) {
+        int depth = depthOf(type);
+        Map<Class<?>, Integer> distances = new HashMap<Class<?>, Integer>();
+        Queue<Class<?>> queue = new ArrayDeque<Class<?>>();
+        distances.put(type, 0);
+        queue.add(type);
+        while (!queue.isEmpty()) {
+            Class<?> current = queue.poll();
+            int next = distances.get(current) + 1;
+            if (!isNull(current.getSuperclass())) {
+                visit(current.getSuperclass(), next, distances, queue);
+            }
+            for (Class<?> implemented : current.getInterfaces()) {
+                visit(implemented, next, distances, queue);
+            }
+        }
+        Map<Class<?>, Long> typeRanks = new HashMap<Class<?>, Long>(distances.size() * 2);
+        for (Map.Entry<Class<?>, Integer> entry : distances.entrySet()) {
+            int tieBreaker = entry.getKey().isInterface() ? depth : 0;
+            typeRanks.put(entry.getKey(), rankOf(entry.getValue(), tieBreaker));
+        }
+        return Collections.unmodifiableMap(typeRanks);
+    }
+
+    private static void visit(Class<?> supertype, int distance, Map<Class<?>, Integer> distances,
+            Queue<Class<?>> queue) {
+        if (!distances.containsKey(supertype)) {
+            distances.put(supertype, distance);
+            queue.add(supertype);
+        }
+    }
+
+    private static int depthOf(Class<?> type) {
+        int depth = 0;
+        for (Class<?> current = type.getSuperclass(); !isNull(current); current = current.getSuperclass()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private static long rankOf(int distance, int tieBreaker) {
+        return ((long) distance << Integer.SIZE) | tieBreaker;
+    }
+
+    private InheritanceDistances() {
+    }
+}
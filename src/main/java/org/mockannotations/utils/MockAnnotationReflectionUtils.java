@@ -15,7 +15,6 @@
  */
 package org.mockannotations.utils;
 
-import static java.lang.reflect.Modifier.isFinal;
 import static java.lang.reflect.Modifier.isPublic;
 import static java.lang.reflect.Modifier.isStatic;
 
@@ -30,6 +29,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+
 /**
  * Utility class for reflection based operations.
  * <p>
@@ -48,19 +49,15 @@ public final class MockAnnotationReflectionUtils {
      */
     public static void setField(Field field, Object target, Object value) throws UnableToWriteFieldException {
         if (value != null) {
-            if (!isStatic(field.getModifiers()) && !isFinal(field.getModifiers())) {
-                doSetField(field, target, value);
+            FieldMetadata metadata = ClassMetadata.forField(field);
+            if (metadata.isWritable()) {
+                doSetField(metadata, target, value);
             }
         }
     }
 
-    private static void doSetField(Field field, Object target, Object value) throws UnableToWriteFieldException, SecurityException {
-        field.setAccessible(true);
-        try {
-            field.set(target, value);
-        } catch (Exception ex) {
-            throw new UnableToWriteFieldException(field, ex);
-        }
+    private static void doSetField(FieldMetadata metadata, Object target, Object value) throws UnableToWriteFieldException, SecurityException {
+        metadata.getAccessor().set(target, value);
     }
 
     /**
@@ -81,17 +78,13 @@ public final class MockAnnotationReflectionUtils {
     }
 
     private static Object getFieldWithRuntimeException(Field field, Object target) throws UnableToReadFieldException, SecurityException {
-        field.setAccessible(true);
-        try {
-            return field.get(target);
-        } catch (Exception ex) {
-            throw new UnableToReadFieldException(field, ex);
-        }
+        return ClassMetadata.forField(field).getAccessor().get(target);
     }
 
     /**
      * Determines the distance of the given object to the given class in the
-     * inheritance tree.
+     * inheritance tree. Both superclasses and implemented interfaces are
+     * followed, the distances are cached by {@link InheritanceDistances}.
      * <p>
      * @param object the root object
      * @param clazz the class to determine the distance to
@@ -100,40 +93,55 @@ public final class MockAnnotationReflectionUtils {
      */
     public static int getInheritanceDistance(Object object, Class<?> clazz) {
         if (clazz.isInstance(object)) {
-            return calculateDistance(object.getClass(), clazz);
+            return InheritanceDistances.distance(object.getClass(), clazz);
         } else {
             return -1;
         }
     }
 
-    private static int calculateDistance(Class<?> compared, Class<?> clazz) {
-        int distance = 0;
-        while (compared != clazz) {
-            compared = compared.getSuperclass();
-            distance++;
-            if (compared == Object.class) {
-                break;
-            }
+    /**
+     * Determines the rank of the given class from the given object, see
+     * {@link InheritanceDistances#rank(Class, Class)}.
+     * <p>
+     * @param object the root object
+     * @param clazz the class to rank
+     * @return the rank of the class, the lower the closer. If the object is
+     * not an instance of the class {@code -1} will return.
+     */
+    public static long getInheritanceRank(Object object, Class<?> clazz) {
+        if (clazz.isInstance(object)) {
+            return InheritanceDistances.rank(object.getClass(), clazz);
+        } else {
+            return -1;
         }
-        return distance;
     }
 
     /**
-     * Scans the class and all its predecessors (up to {@code Object}) for fields.
+     * Determines the rank of the given class from the given type, see
+     * {@link InheritanceDistances#rank(Class, Class)}.
+     * <p>
+     * @param type the type of the root object, can be {@code null}
+     * @param clazz the class to rank
+     * @return the rank of the class, the lower the closer. If the type is
+     * {@code null} or not assignable to the class {@code -1} will return.
+     */
+    public static long getTypeInheritanceRank(Class<?> type, Class<?> clazz) {
+        if (notNull(type) && clazz.isAssignableFrom(type)) {
+            return InheritanceDistances.rank(type, clazz);
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Scans the class and all its predecessors (up to {@code Object}) for fields. The fields are cached per class by
+     * {@link ClassMetadata}, every call returns a new copy of them.
      * <p>
      * @param clazz first level class to scan
      * @return {@code List<Field>} of the class and all it predecessors
      */
     public static List<Field> getAllDeclaredFields(Class<?> clazz) {
-        List<Field> fields = new ArrayList<Field>();
-        Class<?> predecessor = clazz;
-
-        while (!predecessor.equals(Object.class)) {
-            fields.addAll(Arrays.asList(predecessor.getDeclaredFields()));
-            predecessor = predecessor.getSuperclass();
-        }
-
-        return fields;
+        return new ArrayList<Field>(ClassMetadata.forClass(clazz).getFields());
     }
 
     /**
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToInvokeSetterException;
+
+/**
+ * Immutable description of a setter method. It holds everything what is needed to select and inject a mock by the
+ * setter: the name of the property, the raw type and the interned generic signature of the parameter and an invoker
+ * which is bound once, on the first invocation.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class SetterDescriptor {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Method method;
+    private final String propertyName;
+    private final Class<?> type;
+    private final GenericSignature genericSignature;
+    private volatile MethodHandle invoker;
+    private volatile boolean invokerBound;
+
+    SetterDescriptor(Method method) {
+        this.method = method;
+        this.propertyName = getPropertyNameOf(method.getName());
+        this.type = method.getParameterTypes()[0];
+        this.genericSignature = GenericSignature.of(method.getGenericParameterTypes()[0]);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the name of the property set by the setter, e.g. {@code name} for {@code setName}.
+     * <p>
+     * @return the name of the property
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public List<Type> getGenericParameters() {
+        return genericSignature.getParameters();
+    }
+
+    public GenericSignature getGenericSignature() {
+        return genericSignature;
+    }
+
+    /**
+     * Invokes the setter on the target object with the given value.
+     * <p>
+     * @param target object to be injected
+     * @param value value to be set
+     * <p>
+     * @throws UnableToInvokeSetterException when the invocation failed
+     */
+    public void invoke(Object target, Object value) throws UnableToInvokeSetterException {
+        MethodHandle handle = getInvoker();
+        if (notNull(handle)) {
+            invokeHandle(handle, target, value);
+        } else {
+            MockAnnotationReflectionUtils.setBySetter(method, target, value);
+        }
+    }
+
+    private MethodHandle getInvoker() {
+        if (!invokerBound) {
+            invoker = bindInvoker(method);
+            invokerBound = true;
+        }
+        return invoker;
+    }
+
+    private void invokeHandle(MethodHandle handle, Object target, Object value) throws UnableToInvokeSetterException {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable ex) {
+            throw new UnableToInvokeSetterException(method, ex);
+        }
+    }
+
+    private static String getPropertyNameOf(String setterName) {
+        String propertyName = "";
+        if (setterName.length() > 3) {
+            propertyName = Character.toLowerCase(setterName.charAt(3)) + setterName.substring(4);
+        }
+        return propertyName;
+    }
+
+    private static MethodHandle bindInvoker(Method method) {
+        MethodHandle handle = null;
+        try {
+            method.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE);
+        } catch (Exception ignored) {
+            /* Module or security restrictions, falling back to reflective invocation */
+        }
+        return handle;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.isNull;
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Dense integer identifiers of classes. Every class gets a small {@link TypeId} on its first lookup, the ids are held
+ * by a {@link ClassValue} so the lookup is a single cached read and the classes can still be unloaded.
+ * <p>
+ * The value of an id is reclaimed once its {@link TypeId} is no longer reachable, i.e. its class has been unloaded and
+ * no cache holds the id any more, then it is handed out to a new class. So the values stay bounded by the number of
+ * live ids even when mock classes are generated and unloaded test by test, and a cache which keeps the {@link TypeId}
+ * instead of its value can never confuse a new class with an unloaded one.
+ * <p>
+ * @author Balazs Berkes
+ */
+public final class TypeIds {
+
+    /**
+     * Value of the id of the missing type.
+     */
+    public static final int NONE = -1;
+
+    private static final ReferenceQueue<TypeId> releasedIds = new ReferenceQueue<TypeId>();
+    private static final Set<Release> releases = new HashSet<Release>();
+    private static final Deque<Integer> freeValues = new ArrayDeque<Integer>();
+    private static int nextValue;
+
+    private static final ClassValue<TypeId> ids = new ClassValue<TypeId>() {
+
+        @Override
+        protected TypeId computeValue(Class<?> type) {
+            return allocate();
+        }
+    };
+
+    /**
+     * Returns the id of the given class.
+     * <p>
+     * @param type the class, can be {@code null}
+     * @return the id of the class or {@code null} if the class is {@code null}
+     */
+    public static TypeId of(Class<?> type) {
+        return isNull(type) ? null : ids.get(type);
+    }
+
+    /**
+     * Returns the value of the id of the given class. The value is unique among the live ids only, see
+     * {@link TypeIds}.
+     * <p>
+     * @param type the class, can be {@code null}
+     * @return the value of the id of the class or {@link #NONE} if the class is {@code null}
+     */
+    public static int idOf(Class<?> type) {
+        return isNull(type) ? NONE : ids.get(type).value();
+    }
+
+    private static synchronized TypeId allocate() {
+        for (Reference<? extends TypeId> released = releasedIds.poll(); notNull(released);
+                released = releasedIds.poll()) {
+            Release release = (Release) released;
+            releases.remove(release);
+            freeValues.push(release.value);
+        }
+        Integer free = freeValues.poll();
+        TypeId id = new TypeId(isNull(free) ? nextValue++ : free);
+        releases.add(new Release(id, releasedIds));
+        return id;
+    }
+
+    private TypeIds() {
+    }
+
+    /**
+     * Id of a class. The ids are compared by identity, the value is their hash code.
+     */
+    public static final class TypeId {
+
+        private final int value;
+
+        private TypeId(int value) {
+            this.value = value;
+        }
+
+        public int value() {
+            return value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "TypeId{" + value + '}';
+        }
+    }
+
+    /**
+     * Returns the value of an id to the free values once the id is no longer reachable.
+     */
+    private static final class Release extends WeakReference<TypeId> {
+
+        private final int value;
+
+        private Release(TypeId id, ReferenceQueue<TypeId> queue) {
+            super(id, queue);
+            this.value = id.value;
+        }
+    }
+}
@@ -16,17 +16,30 @@
 package org.mockannotations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.mockannotations.ClassInitializer.ConstructorFailure;
 import org.mockannotations.ClassInitializer.InitializationException;
 
 /**
@@ -36,6 +49,8 @@ import org.mockannotations.ClassInitializer.InitializationException;
  */
 public class ClassInitializerTest {
 
+    private static final int GC_ATTEMPTS = 50;
+
     private List<MockHolder> mocks;
     private Class<?> clazz;
     private String string = "";
@@ -48,6 +63,12 @@ public class ClassInitializerTest {
         underTest = new ClassInitializer();
     }
 
+    @After
+    public void tearDown() {
+        ClassInitializer.setStackTraceDiagnostics(false);
+        ClassInitializer.setDefaultInstantiationMode(InstantiationMode.CONSTRUCTOR);
+    }
+
     @Test
     public void testInitializeShouldCreateNewInstanceWhenClassHasDefaultConstructor() {
         givenMocksToInject();
@@ -126,6 +147,222 @@ public class ClassInitializerTest {
         underTest.initialize(clazz, mocks);
     }
 
+    @Test
+    public void testInitializeShouldCreateNewInstancesWhenCalledRepeatedly() {
+        givenMocksToInject(string, object);
+        givenClassToInitialize(MultiParamConstructor.class);
+
+        MultiParamConstructor first = (MultiParamConstructor) underTest.initialize(clazz, mocks);
+        MultiParamConstructor second = (MultiParamConstructor) underTest.initialize(clazz, mocks);
+
+        assertNotSame(first, second);
+        assertEquals(string, second.getString());
+        assertEquals(object, second.getObject());
+    }
+
+    @Test
+    public void testInitializeShouldNotReuseLastConstructorWhenMockTypesDiffer() {
+        givenMocksToInject(object);
+        givenClassToInitialize(StringOrObjectsConstructor.class);
+        StringOrObjectsConstructor first = (StringOrObjectsConstructor) underTest.initialize(clazz, mocks);
+        givenMocksToInject(string);
+
+        StringOrObjectsConstructor second = (StringOrObjectsConstructor) underTest.initialize(clazz, mocks);
+
+        assertEquals(2, first.getParameterCount());
+        assertEquals(1, second.getParameterCount());
+    }
+
+    @Test(expected = OutOfMemoryError.class)
+    public void testInitializeShouldNotReportVirtualMachineErrorOfConstructor() {
+        givenMocksToInject(string);
+        givenClassToInitialize(ErrorConstructor.class);
+        ErrorConstructor.error = new OutOfMemoryError();
+
+        underTest.initialize(clazz, mocks);
+    }
+
+    @Test
+    public void testInitializeShouldReportOtherErrorsOfConstructor() {
+        givenMocksToInject(string);
+        givenClassToInitialize(ErrorConstructor.class);
+        ErrorConstructor.error = new AssertionError();
+
+        InitializationException exception = initializeExpectingFailure();
+
+        assertEquals(1, exception.getFailures().size());
+        assertSame(ErrorConstructor.error, exception.getFailures().get(0).getCause());
+    }
+
+    @Test
+    public void testInitializeShouldTryDefaultConstructorAgainAfterItFailed() {
+        givenMocksToInject(string);
+        givenClassToInitialize(FlakyDefaultConstructor.class);
+        FlakyDefaultConstructor.failing = true;
+        FlakyDefaultConstructor first = (FlakyDefaultConstructor) underTest.initialize(clazz, mocks);
+        FlakyDefaultConstructor.failing = false;
+
+        FlakyDefaultConstructor second = (FlakyDefaultConstructor) underTest.initialize(clazz, mocks);
+
+        assertFalse(first.isCreatedByDefault());
+        assertTrue(second.isCreatedByDefault());
+    }
+
+    @Test
+    public void testInitializeShouldNotPinClassesOfMocks() throws Exception {
+        givenClassToInitialize(ObjectOrStringConstructor.class);
+        WeakReference<ClassLoader> classLoader = initializeWithMockOfUnloadableClass();
+
+        for (int attempt = 0; attempt < GC_ATTEMPTS && notNull(classLoader.get()); attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(classLoader.get());
+    }
+
+    @Test
+    public void testInitializeShouldPreferClosestConstructorWhenClassHasOverloads() {
+        givenMocksToInject(string);
+        givenClassToInitialize(ObjectOrStringConstructor.class);
+
+        ObjectOrStringConstructor actualClass = (ObjectOrStringConstructor) underTest.initialize(clazz, mocks);
+
+        assertEquals(String.class, actualClass.getParameterType());
+    }
+
+    @Test
+    public void testInitializeShouldTryNextClosestConstructorWhenClosestFails() {
+        givenMocksToInject(new ArrayList<Object>());
+        givenClassToInitialize(FailingClosestConstructor.class);
+
+        FailingClosestConstructor actualClass = (FailingClosestConstructor) underTest.initialize(clazz, mocks);
+
+        assertEquals(AbstractList.class, actualClass.getParameterType());
+    }
+
+    @Test
+    public void testInitializeShouldNotInvokeConstructorsWhichCannotBeFullyInjected() {
+        givenMocksToInject(object);
+        givenClassToInitialize(MultiParamConstructorWithMoreVersion.class);
+
+        InitializationException exception = initializeExpectingFailure();
+
+        assertTrue(exception.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testInitializeShouldReportFailuresOfInvokedConstructorsWithoutStackTrace() {
+        givenMocksToInject(string);
+        givenClassToInitialize(FailingStringConstructor.class);
+
+        InitializationException exception = initializeExpectingFailure();
+
+        assertEquals(1, exception.getFailures().size());
+        ConstructorFailure failure = exception.getFailures().get(0);
+        assertEquals(1, failure.getConstructor().getParameterTypes().length);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(0, failure.getStackTrace().length);
+        assertEquals(failure, exception.getSuppressed()[0]);
+    }
+
+    @Test
+    public void testInitializeShouldCaptureStackTraceOfFailuresWhenDiagnosticsAreOn() {
+        ClassInitializer.setStackTraceDiagnostics(true);
+        givenMocksToInject();
+        givenClassToInitialize(ExceptionConstructor.class);
+
+        InitializationException exception = initializeExpectingFailure();
+
+        assertEquals(1, exception.getFailures().size());
+        assertFalse(exception.getFailures().get(0).getStackTrace().length == 0);
+    }
+
+    @Test
+    public void testInitializeShouldNotRunAnyConstructorWhenClassIsConstructorFree() {
+        underTest.setInstantiationMode(ExpensiveConstructor.class, InstantiationMode.CONSTRUCTOR_FREE);
+        givenMocksToInject();
+        givenClassToInitialize(ExpensiveConstructor.class);
+
+        ExpensiveConstructor actualClass = (ExpensiveConstructor) underTest.initialize(clazz, mocks);
+
+        assertObjectInitialized(actualClass);
+        assertNull(actualClass.getString());
+    }
+
+    @Test
+    public void testInitializeShouldInjectMocksIntoConstructorFreeInstance() {
+        underTest = new ClassInitializer(InstantiationMode.CONSTRUCTOR_FREE);
+        givenMocksToInject(string);
+        givenClassToInitialize(ExpensiveConstructor.class);
+
+        ExpensiveConstructor actualClass = (ExpensiveConstructor) underTest.initialize(clazz, mocks);
+
+        assertSame(string, actualClass.getString());
+    }
+
+    @Test
+    public void testInitializeShouldPreferModeOfClassOverDefaultMode() {
+        underTest = new ClassInitializer(InstantiationMode.CONSTRUCTOR_FREE);
+        underTest.setInstantiationMode(MultiParamConstructor.class, InstantiationMode.CONSTRUCTOR);
+        givenMocksToInject(string, object);
+        givenClassToInitialize(MultiParamConstructor.class);
+
+        MultiParamConstructor actualClass = (MultiParamConstructor) underTest.initialize(clazz, mocks);
+
+        assertEquals(string, actualClass.getString());
+        assertEquals(InstantiationMode.CONSTRUCTOR_FREE, underTest.getInstantiationMode(ExpensiveConstructor.class));
+    }
+
+    @Test
+    public void testInitializeShouldFollowGlobalDefaultModeWithoutOwnDefaultMode() {
+        ClassInitializer.setDefaultInstantiationMode(InstantiationMode.CONSTRUCTOR_FREE);
+
+        assertEquals(InstantiationMode.CONSTRUCTOR_FREE, underTest.getInstantiationMode(ExpensiveConstructor.class));
+        assertEquals(InstantiationMode.CONSTRUCTOR,
+                new ClassInitializer(InstantiationMode.CONSTRUCTOR).getInstantiationMode(ExpensiveConstructor.class));
+    }
+
+    @Test
+    public void testInitializeShouldNotShareModeOfClassBetweenInitializers() {
+        underTest.setInstantiationMode(ExpensiveConstructor.class, InstantiationMode.CONSTRUCTOR_FREE);
+
+        assertEquals(InstantiationMode.CONSTRUCTOR, new ClassInitializer().getInstantiationMode(ExpensiveConstructor.class));
+    }
+
+    @Test
+    public void testInitializeShouldReportFailureWhenConstructorFreeClassIsAbstract() {
+        underTest = new ClassInitializer(InstantiationMode.CONSTRUCTOR_FREE);
+        givenMocksToInject();
+        givenClassToInitialize(AbstractClass.class);
+
+        InitializationException exception = initializeExpectingFailure();
+
+        assertEquals(1, exception.getFailures().size());
+        assertEquals(InstantiationException.class, exception.getFailures().get(0).getCause().getClass());
+    }
+
+    private InitializationException initializeExpectingFailure() {
+        try {
+            underTest.initialize(clazz, mocks);
+        } catch (InitializationException exception) {
+            return exception;
+        }
+        fail("InitializationException expected");
+        return null;
+    }
+
+    private WeakReference<ClassLoader> initializeWithMockOfUnloadableClass() throws Exception {
+        Class<?> unloadable = new DefiningClassLoader().define(Unloadable.class);
+        givenMocksToInject(unloadable.newInstance());
+
+        ObjectOrStringConstructor actualClass = (ObjectOrStringConstructor) underTest.initialize(clazz, mocks);
+
+        assertEquals(Object.class, actualClass.getParameterType());
+        mocks = null;
+        return new WeakReference<ClassLoader>(unloadable.getClassLoader());
+    }
+
     private void givenClassToInitialize(Class<?> clazz) {
         this.clazz = clazz;
     }
@@ -221,6 +458,140 @@ public class ClassInitializerTest {
         }
     }
 
+    public static class StringOrObjectsConstructor {
+
+        private final int parameterCount;
+
+        public StringOrObjectsConstructor(String string) {
+            parameterCount = 1;
+        }
+
+        public StringOrObjectsConstructor(Object left, Object right) {
+            parameterCount = 2;
+        }
+
+        public int getParameterCount() {
+            return parameterCount;
+        }
+    }
+
+    public static class ObjectOrStringConstructor {
+
+        private final Class<?> parameterType;
+
+        public ObjectOrStringConstructor(Object object) {
+            parameterType = Object.class;
+        }
+
+        public ObjectOrStringConstructor(String string) {
+            parameterType = String.class;
+        }
+
+        public Class<?> getParameterType() {
+            return parameterType;
+        }
+    }
+
+    public static class FailingClosestConstructor {
+
+        private final Class<?> parameterType;
+
+        public FailingClosestConstructor(Object object) {
+            parameterType = Object.class;
+        }
+
+        public FailingClosestConstructor(AbstractList<?> list) {
+            parameterType = AbstractList.class;
+        }
+
+        public FailingClosestConstructor(ArrayList<?> list) {
+            throw new IllegalStateException();
+        }
+
+        public Class<?> getParameterType() {
+            return parameterType;
+        }
+    }
+
+    public static class FlakyDefaultConstructor {
+
+        private static volatile boolean failing;
+
+        private final boolean createdByDefault;
+
+        public FlakyDefaultConstructor() {
+            if (failing) {
+                throw new IllegalStateException();
+            }
+            createdByDefault = true;
+        }
+
+        public FlakyDefaultConstructor(String string) {
+            createdByDefault = false;
+        }
+
+        public boolean isCreatedByDefault() {
+            return createdByDefault;
+        }
+    }
+
+    public static class ErrorConstructor {
+
+        private static volatile Error error;
+
+        public ErrorConstructor(String string) {
+            throw error;
+        }
+    }
+
+    public static class Unloadable {
+    }
+
+    private static class DefiningClassLoader extends ClassLoader {
+
+        DefiningClassLoader() {
+            super(ClassInitializerTest.class.getClassLoader());
+        }
+
+        Class<?> define(Class<?> clazz) throws IOException {
+            String resource = clazz.getName().replace('.', '/') + ".class";
+            InputStream in = getParent().getResourceAsStream(resource);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+                return defineClass(clazz.getName(), out.toByteArray(), 0, out.size());
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    public static class FailingStringConstructor {
+
+        public FailingStringConstructor(String string) {
+            throw new IllegalStateException(string);
+        }
+    }
+
+    public static class ExpensiveConstructor {
+
+        private String string;
+
+        public ExpensiveConstructor(String string) {
+            throw new IllegalStateException("Constructor should not run");
+        }
+
+        public String getString() {
+            return string;
+        }
+    }
+
+    public abstract static class AbstractClass {
+    }
+
     public static class ExceptionConstructor {
 
         public ExceptionConstructor() {
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockannotations.GraphInitializer.CyclicDependencyException;
+
+/**
+ * Unit test for {@link GraphInitializer}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class GraphInitializerTest {
+
+    private List<MockHolder> mocks;
+    private List<Class<?>> classes;
+    private String string = "";
+    private ForkJoinPool pool;
+
+    private GraphInitializer underTest;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+        underTest = new GraphInitializer(pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testInitializeShouldCreateDependenciesBeforeTheirDependents() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(Controller.class, Service.class, Repository.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        Controller controller = (Controller) actual.get(Controller.class);
+        Service service = (Service) actual.get(Service.class);
+        Repository repository = (Repository) actual.get(Repository.class);
+        assertSame(service, controller.getService());
+        assertSame(repository, service.getRepository());
+        assertSame(string, repository.getName());
+    }
+
+    @Test
+    public void testInitializeShouldInjectInstancesIntoEachOther() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(Controller.class, Service.class, Repository.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        Service service = (Service) actual.get(Service.class);
+        assertSame(actual.get(Controller.class), service.getController());
+    }
+
+    @Test
+    public void testInitializeShouldKeepTheOrderOfTheClasses() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(Controller.class, Service.class, Repository.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        assertEquals(classes, new ArrayList<Class<?>>(actual.keySet()));
+    }
+
+    @Test
+    public void testInitializeShouldCreateIndependentClassesOnThePool() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(ThreadRecorder.class, AnotherThreadRecorder.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        assertCreatedOnPool(((ThreadRecorder) actual.get(ThreadRecorder.class)).getCreator());
+        assertCreatedOnPool(((AnotherThreadRecorder) actual.get(AnotherThreadRecorder.class)).getCreator());
+    }
+
+    @Test
+    public void testInitializeShouldRejectCyclicConstructorDependencies() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(Controller.class, Chicken.class, Egg.class);
+
+        try {
+            underTest.initialize(classes, mocks);
+        } catch (CyclicDependencyException ex) {
+            assertEquals(new HashSet<Class<?>>(Arrays.<Class<?>>asList(Chicken.class, Egg.class)), ex.getClasses());
+            return;
+        }
+        fail("CyclicDependencyException expected");
+    }
+
+    @Test
+    public void testInitializeShouldBreakCycleByConstructorFreeClassOfTheClassInitializer() {
+        ClassInitializer classInitializer = new ClassInitializer();
+        classInitializer.setInstantiationMode(Chicken.class, InstantiationMode.CONSTRUCTOR_FREE);
+        underTest = new GraphInitializer(pool, classInitializer);
+        givenMocksToInject(string);
+        givenClassesToInitialize(Chicken.class, Egg.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        assertTrue(actual.get(Chicken.class) instanceof Chicken);
+        assertTrue(actual.get(Egg.class) instanceof Egg);
+    }
+
+    @Test
+    public void testInitializeShouldCreateClassByConstructorOfMocksInsteadOfReportingCycle() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(Overloaded.class, OverloadedDependent.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        Overloaded overloaded = (Overloaded) actual.get(Overloaded.class);
+        OverloadedDependent dependent = (OverloadedDependent) actual.get(OverloadedDependent.class);
+        assertSame(string, overloaded.getName());
+        assertSame(overloaded, dependent.getOverloaded());
+    }
+
+    @Test
+    public void testInitializeShouldKeepDependencyOfClassWhichOnlyDependsOnCycle() {
+        givenMocksToInject(string);
+        givenClassesToInitialize(OverloadedConsumer.class, Overloaded.class, OverloadedDependent.class);
+
+        Map<Class<?>, Object> actual = underTest.initialize(classes, mocks);
+
+        OverloadedConsumer consumer = (OverloadedConsumer) actual.get(OverloadedConsumer.class);
+        assertSame(actual.get(Overloaded.class), consumer.getOverloaded());
+    }
+
+    private void assertCreatedOnPool(Thread creator) {
+        assertTrue(creator instanceof ForkJoinWorkerThread);
+        assertSame(pool, ((ForkJoinWorkerThread) creator).getPool());
+    }
+
+    private void givenClassesToInitialize(Class<?>... classes) {
+        this.classes = Arrays.asList(classes);
+    }
+
+    private void givenMocksToInject(Object... mocks) {
+        this.mocks = new ArrayList<MockHolder>();
+        for (Object mock : mocks) {
+            MockHolder mockHolder = new MockHolder();
+            mockHolder.setMock(mock);
+            this.mocks.add(mockHolder);
+        }
+    }
+
+    public static class Repository {
+
+        private final String name;
+
+        public Repository(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Service {
+
+        private final Repository repository;
+        private Controller controller;
+
+        public Service(Repository repository) {
+            this.repository = repository;
+        }
+
+        public Repository getRepository() {
+            return repository;
+        }
+
+        public Controller getController() {
+            return controller;
+        }
+    }
+
+    public static class Controller {
+
+        private final Service service;
+
+        public Controller(Service service) {
+            this.service = service;
+        }
+
+        public Service getService() {
+            return service;
+        }
+    }
+
+    public static class ThreadRecorder {
+
+        private final Thread creator = Thread.currentThread();
+
+        public Thread getCreator() {
+            return creator;
+        }
+    }
+
+    public static class AnotherThreadRecorder {
+
+        private final Thread creator = Thread.currentThread();
+
+        public Thread getCreator() {
+            return creator;
+        }
+    }
+
+    public static class Chicken {
+
+        public Chicken(Egg egg) {
+        }
+    }
+
+    public static class Egg {
+
+        public Egg(Chicken chicken) {
+        }
+    }
+
+    public static class Overloaded {
+
+        private final String name;
+
+        public Overloaded(OverloadedDependent dependent) {
+            throw new IllegalStateException("Overloaded cannot be created from its dependent");
+        }
+
+        public Overloaded(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class OverloadedDependent {
+
+        private final Overloaded overloaded;
+
+        public OverloadedDependent(Overloaded overloaded) {
+            this.overloaded = overloaded;
+        }
+
+        public Overloaded getOverloaded() {
+            return overloaded;
+        }
+    }
+
+    public static class OverloadedConsumer {
+
+        private final Overloaded overloaded;
+
+        public OverloadedConsumer(Overloaded overloaded) {
+            this.overloaded = overloaded;
+        }
+
+        public OverloadedConsumer(CharSequence name) {
+            this.overloaded = null;
+        }
+
+        public Overloaded getOverloaded() {
+            return overloaded;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.mockannotations.utils.ClassMetadata;
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+
+/**
+ * Unit test for {@link InjectionEngines}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class InjectionEnginesTest {
+
+    private final String string = "string";
+    private final Integer number = 42;
+
+    @After
+    public void tearDown() {
+        InjectionEngines.setDefaultEngine(InjectionEngines.REFLECTIVE);
+    }
+
+    @Test
+    public void testReflectiveEngineShouldWriteResolvedMocks() {
+        assertResolvedMocksAreWritten(InjectionEngines.REFLECTIVE);
+    }
+
+    @Test
+    public void testGeneratedEngineShouldWriteResolvedMocks() {
+        assertResolvedMocksAreWritten(InjectionEngines.GENERATED);
+    }
+
+    @Test
+    public void testGeneratedEngineShouldSkipNullMocks() {
+        Target target = new Target();
+        target.string = "original";
+
+        InjectionEngines.GENERATED.injectorFor(Target.class).inject(target, resolvedMocks(Target.class, null, number));
+
+        assertEquals("original", target.string);
+        assertEquals(number, target.number);
+    }
+
+    @Test
+    public void testGeneratedEngineShouldHandleClassWithoutWritableFields() {
+        InjectionEngines.GENERATED.injectorFor(Object.class).inject(new Object(), new Object[0]);
+    }
+
+    @Test
+    public void testGeneratedEngineShouldCacheInjectorPerClass() {
+        assertSame(InjectionEngines.GENERATED.injectorFor(Target.class),
+                InjectionEngines.GENERATED.injectorFor(Target.class));
+    }
+
+    @Test(expected = UnableToWriteFieldException.class)
+    public void testGeneratedEngineShouldReportFieldWhenWriteFails() {
+        Object[] resolvedMocks = resolvedMocks(Target.class, number, number);
+
+        InjectionEngines.GENERATED.injectorFor(Target.class).inject(new Target(), resolvedMocks);
+    }
+
+    @Test
+    public void testMockInjectorShouldUseDefaultEngine() {
+        InjectionEngines.setDefaultEngine(InjectionEngines.GENERATED);
+        Target target = new Target();
+
+        new MockInjector(mocksOf(string, number)).injectTo(target);
+
+        assertEquals(string, target.string);
+        assertEquals(number, target.number);
+    }
+
+    private void assertResolvedMocksAreWritten(InjectionEngine engine) {
+        SubTarget target = new SubTarget();
+
+        engine.injectorFor(SubTarget.class).inject(target, resolvedMocks(SubTarget.class, string, number));
+
+        assertEquals(string, target.string);
+        assertEquals(number, target.number);
+        assertNull(target.other);
+    }
+
+    private Object[] resolvedMocks(Class<?> type, Object stringValue, Object numberValue) {
+        List<FieldMetadata> fields = ClassMetadata.forClass(type).getWritableFields();
+        Object[] resolvedMocks = new Object[fields.size()];
+        for (int i = 0; i < resolvedMocks.length; i++) {
+            String name = fields.get(i).getField().getName();
+            if ("string".equals(name)) {
+                resolvedMocks[i] = stringValue;
+            } else if ("number".equals(name)) {
+                resolvedMocks[i] = numberValue;
+            }
+        }
+        return resolvedMocks;
+    }
+
+    private List<MockHolder> mocksOf(Object... mocks) {
+        List<MockHolder> holders = new ArrayList<MockHolder>();
+        for (Object mock : mocks) {
+            holders.add(MockHolder.create(mock, fieldOf(mock), null));
+        }
+        return holders;
+    }
+
+    private Field fieldOf(Object mock) {
+        Field field = null;
+        for (Field f : getClass().getDeclaredFields()) {
+            if (f.getType().isInstance(mock)) {
+                field = f;
+            }
+        }
+        return field;
+    }
+
+    private static class Target {
+
+        String string;
+        Integer number;
+    }
+
+    private static class SubTarget extends Target {
+
+        Object other;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import static org.mockannotations.InjectionPlan.MAX_PLANS_PER_CLASS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.mockannotations.selection.ByNameSelector;
+
+/**
+ * Unit test for {@link InjectionPlan}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class InjectionPlanTest {
+
+    @Test
+    public void testStoreShouldCachePlansOfNewStructuresWhenCacheIsFull() {
+        fillCache(FullTarget.class);
+        InjectionPlan plan = new InjectionPlan(new int[0]);
+
+        InjectionPlan.store(FullTarget.class, fingerprintOf(MAX_PLANS_PER_CLASS), plan);
+
+        assertSame(plan, InjectionPlan.find(FullTarget.class, fingerprintOf(MAX_PLANS_PER_CLASS)));
+        assertNull(InjectionPlan.find(FullTarget.class, fingerprintOf(MAX_PLANS_PER_CLASS + 1)));
+    }
+
+    @Test
+    public void testStoreShouldKeepReplayedPlanWhenEvicting() {
+        fillCache(ReplayedTarget.class);
+        InjectionPlan.store(ReplayedTarget.class, fingerprintOf(MAX_PLANS_PER_CLASS), new InjectionPlan(new int[0]));
+        int replayed = anyCachedSize(ReplayedTarget.class);
+
+        InjectionPlan.find(ReplayedTarget.class, fingerprintOf(replayed));
+        InjectionPlan.store(ReplayedTarget.class, fingerprintOf(MAX_PLANS_PER_CLASS + 1), new InjectionPlan(new int[0]));
+
+        assertNotNull(InjectionPlan.find(ReplayedTarget.class, fingerprintOf(replayed)));
+        assertNotNull(InjectionPlan.find(ReplayedTarget.class, fingerprintOf(MAX_PLANS_PER_CLASS + 1)));
+    }
+
+    private void fillCache(Class<?> type) {
+        for (int size = 0; size < MAX_PLANS_PER_CLASS; size++) {
+            InjectionPlan.store(type, fingerprintOf(size), new InjectionPlan(new int[0]));
+        }
+    }
+
+    private int anyCachedSize(Class<?> type) {
+        int size = 0;
+        while (InjectionPlan.find(type, fingerprintOf(size)) == null) {
+            size++;
+        }
+        return size;
+    }
+
+    private MockSetFingerprint fingerprintOf(int size) {
+        List<MockHolder> mocks = new ArrayList<MockHolder>();
+        for (int i = 0; i < size; i++) {
+            mocks.add(MockHolder.create("mock", null, null));
+        }
+        return MockSetFingerprint.of(mocks, ByNameSelector.DEFAULT_STRATEGIES);
+    }
+
+    private static class FullTarget {
+    }
+
+    private static class ReplayedTarget {
+    }
+}
@@ -16,12 +16,23 @@
 package org.mockannotations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import org.mockannotations.utils.GenericSignature;
+import org.mockannotations.utils.TypeIds;
+
 /**
  * Unit test for {@link MockHolder}.
  * <p>
@@ -31,6 +42,7 @@ public class MockHolderTest {
 
     private static final String MOCK_NAME = "MOCK_NAME";
     private static final Object MOCK = new Object();
+    private static final List<String> GENERIC = new ArrayList<String>();
 
     private Field sourceField;
 
@@ -70,6 +82,111 @@ public class MockHolderTest {
         assertEquals("", underTest.getSourceName());
     }
 
+    @Test
+    public void testGetGenericSignatureShouldFollowTheSourceField() throws Exception {
+        MockHolder underTest = MockHolder.create(MOCK, sourceField, MOCK_NAME);
+        GenericSignature initial = underTest.getGenericSignature();
+
+        underTest.setSourceField(getClass().getDeclaredField("GENERIC"));
+
+        assertSame(GenericSignature.NONE, initial);
+        assertSame(GenericSignature.of(Arrays.<Type>asList(String.class)), underTest.getGenericSignature());
+    }
+
+    @Test
+    public void testLazyShouldNotCreateTheMockUntilItIsRequested() {
+        CountingSupplier supplier = new CountingSupplier(GENERIC);
+
+        MockHolder underTest = MockHolder.lazy(List.class, sourceField, MOCK_NAME, supplier);
+
+        assertEquals(List.class, underTest.getMockType());
+        assertFalse(underTest.isMaterialized());
+        assertEquals(0, supplier.calls);
+    }
+
+    @Test
+    public void testLazyShouldCreateTheMockOnceForAllCopies() {
+        CountingSupplier supplier = new CountingSupplier(GENERIC);
+        MockHolder underTest = MockHolder.lazy(List.class, sourceField, MOCK_NAME, supplier);
+        MockHolder copy = underTest.copy();
+
+        Object mock = underTest.getMock();
+
+        assertSame(GENERIC, mock);
+        assertSame(GENERIC, copy.getMock());
+        assertTrue(copy.isMaterialized());
+        assertEquals(1, supplier.calls);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLazyShouldRejectMockOfOtherType() {
+        MockHolder underTest = MockHolder.lazy(String.class, sourceField, MOCK_NAME, new CountingSupplier(MOCK));
+
+        underTest.getMock();
+    }
+
+    @Test
+    public void testGetMockTypeShouldReturnTheClassOfTheMock() {
+        MockHolder underTest = MockHolder.create(GENERIC, sourceField, MOCK_NAME);
+
+        assertEquals(ArrayList.class, underTest.getMockType());
+        assertTrue(underTest.isMaterialized());
+    }
+
+    @Test
+    public void testFreezeShouldPrecomputeTheSelectionKeys() {
+        MockHolder underTest = MockHolder.create(GENERIC, sourceField, null).freeze();
+
+        assertEquals(ArrayList.class, underTest.getMockType());
+        assertSame("MOCK", underTest.getSourceName());
+        assertSame("mock", underTest.getFoldedSourceName());
+        assertEquals("", underTest.getName());
+        assertSame(GenericSignature.NONE, underTest.getGenericSignature());
+        assertSame(TypeIds.of(ArrayList.class), underTest.getTypeId());
+    }
+
+    @Test
+    public void testFoldedSourceNameShouldFollowTheSourceField() throws Exception {
+        MockHolder underTest = MockHolder.create(MOCK, sourceField, MOCK_NAME);
+        underTest.getFoldedSourceName();
+
+        underTest.setSourceField(getClass().getDeclaredField("GENERIC"));
+
+        assertEquals("generic", underTest.getFoldedSourceName());
+    }
+
+    @Test
+    public void testFreezeShouldNotSeeChangesOfTheBuilder() throws Exception {
+        MockHolder builder = MockHolder.create(MOCK, sourceField, MOCK_NAME);
+        MockHolder underTest = builder.freeze();
+
+        builder.setMock(GENERIC);
+        builder.setSourceField(getClass().getDeclaredField("GENERIC"));
+
+        assertSame(MOCK, underTest.getMock());
+        assertEquals(sourceField, underTest.getSourceField());
+        assertSame(underTest, underTest.freeze());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenHolderShouldRejectChanges() {
+        MockHolder underTest = MockHolder.create(MOCK, sourceField, MOCK_NAME).freeze();
+
+        underTest.setMock(GENERIC);
+    }
+
+    @Test
+    public void testFreezeShouldShareTheLazyMock() {
+        CountingSupplier supplier = new CountingSupplier(GENERIC);
+        MockHolder lazy = MockHolder.lazy(List.class, sourceField, MOCK_NAME, supplier);
+        MockHolder underTest = lazy.freeze();
+
+        assertEquals(List.class, underTest.getMockType());
+        assertSame(GENERIC, underTest.getMock());
+        assertTrue(lazy.isMaterialized());
+        assertEquals(1, supplier.calls);
+    }
+
     private void initializeField() {
         for (Field field : this.getClass().getDeclaredFields()) {
             if (field.getName().equals("MOCK")) {
@@ -79,4 +196,20 @@ public class MockHolderTest {
             }
         }
     }
+
+    private static class CountingSupplier implements Supplier<Object> {
+
+        private final Object mock;
+        private int calls;
+
+        CountingSupplier(Object mock) {
+            this.mock = mock;
+        }
+
+        @Override
+        public Object get() {
+            calls++;
+            return mock;
+        }
+    }
 }
@@ -16,16 +16,30 @@
 package org.mockannotations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import static org.mockannotations.selection.ByNameSelector.NAME_CONTAINS_STRATEGY;
+import static org.mockannotations.selection.ByNameSelector.NAME_EQUALS_IGNORE_CASE_STRATEGY;
+import static org.mockannotations.selection.ByNameSelector.NAME_EQUALS_STRATEGY;
 
 import java.lang.reflect.Field;
 import java.util.HashSet;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import org.mockannotations.selection.ByNameSelector;
+import org.mockannotations.selection.SelectionStrategies;
+
 /**
  * Unit test for {@link MockInjector}.
  *
@@ -107,6 +121,258 @@ public class MockInjectorTest {
 
     }
 
+    @Test
+    public void testInjectMocksShouldReplayPlanForNewMocksOfTheSameStructure() {
+        givenMocks(superClass, anotherSuperClass);
+        underTest.injectTo(new TestedClassWithFieldsOfSameType());
+        initializeTestComponents();
+        givenMocks(superClass, anotherSuperClass);
+        givenClassWithUniqueNamedFieldsOfSameType();
+
+        underTest.injectTo(classUniqueNamedFields);
+
+        assertFieldsInjectedByName();
+    }
+
+    @Test
+    public void testInjectMocksShouldNotReplayPlanWhenSourceFieldsDiffer() throws Exception {
+        givenMocks(superClass, anotherSuperClass);
+        underTest.injectTo(new TestedClassWithFieldsOfSameType());
+        givenMocksWithSwappedSourceFields();
+        underTest = new MockInjector(mocks);
+        givenClassWithUniqueNamedFieldsOfSameType();
+
+        underTest.injectTo(classUniqueNamedFields);
+
+        assertEquals(anotherSuperClass, classUniqueNamedFields.superClass);
+        assertEquals(superClass, classUniqueNamedFields.anotherSuperClass);
+    }
+
+    private void givenMocksWithSwappedSourceFields() throws Exception {
+        mocks.get(0).setSourceField(getClass().getDeclaredField("anotherSuperClass"));
+        mocks.get(1).setSourceField(getClass().getDeclaredField("superClass"));
+    }
+
+    @Test
+    public void testInjectAllShouldInjectEveryTargetOfEveryClass() {
+        givenMocks(superClass, clazz, subClass);
+        List<Object> targets = givenTargetsOfDifferentClasses(200);
+
+        underTest.injectAll(targets);
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test
+    public void testInjectAllShouldRunTasksOnTheGivenExecutor() throws Exception {
+        givenMocks(superClass, clazz, subClass);
+        List<Object> targets = givenTargetsOfDifferentClasses(200);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            underTest.injectAll(targets, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test
+    public void testInjectAllShouldInjectOnCallingThreadWhenExecutorRejects() {
+        givenMocks(superClass, clazz, subClass);
+        List<Object> targets = givenTargetsOfDifferentClasses(50);
+
+        underTest.injectAll(targets, new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test(timeout = 10000)
+    public void testInjectAllShouldNotDeadlockWhenCalledFromWorkerOfThePool() {
+        givenMocks(superClass, clazz, subClass);
+        final List<Object> targets = givenTargetsOfDifferentClasses(200);
+        final ForkJoinPool pool = new ForkJoinPool(1);
+
+        try {
+            pool.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    underTest.injectAll(targets, pool);
+                }
+            }).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test(timeout = 10000)
+    public void testInjectAllShouldRunInlineWhenCalledFromWorkerOfAnotherPool() {
+        givenMocks(superClass, clazz, subClass);
+        final List<Object> targets = givenTargetsOfDifferentClasses(200);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        ForkJoinPool pool = new ForkJoinPool(1);
+
+        try {
+            pool.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    underTest.injectAll(targets, executor);
+                }
+            }).join();
+        } finally {
+            pool.shutdown();
+            executor.shutdown();
+        }
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test
+    public void testInjectMocksShouldSelectByNameWithTheStrategiesOfTheInjector() {
+        givenMocks(superClass, anotherSuperClass);
+        givenClassWithUniqueLowerCaseNamedFieldsOfSameType();
+        MockInjector exactNameInjector = new MockInjector(mocks, SelectionStrategies.of(NAME_EQUALS_STRATEGY));
+
+        exactNameInjector.injectTo(classUniqueLowCaseNamedFields);
+
+        assertEquals(superClass, classUniqueLowCaseNamedFields.superclass);
+        assertEquals(superClass, classUniqueLowCaseNamedFields.anothersuperclass);
+    }
+
+    @Test
+    public void testInjectMocksShouldNotBeAffectedByOverriddenGlobalStrategies() {
+        givenMocks(superClass, anotherSuperClass);
+        givenClassWithUniqueLowerCaseNamedFieldsOfSameType();
+        MockInjector defaultInjector = new MockInjector(mocks, ByNameSelector.DEFAULT_STRATEGIES);
+
+        ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY);
+        try {
+            defaultInjector.injectTo(classUniqueLowCaseNamedFields);
+        } finally {
+            ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY, NAME_EQUALS_IGNORE_CASE_STRATEGY,
+                    NAME_CONTAINS_STRATEGY);
+        }
+
+        assertFieldsInjectedByLowerCaseName();
+    }
+
+    @Test
+    public void testInjectMocksShouldCreateOnlyTheInjectedLazyMocks() throws Exception {
+        CountingSupplier unusedSupplier = new CountingSupplier(set);
+        mocks = new ArrayList<MockHolder>();
+        mocks.add(givenLazyMock(SuperClass.class, "superClass", new CountingSupplier(superClass)));
+        mocks.add(givenLazyMock(SuperClass.class, "anotherSuperClass", new CountingSupplier(anotherSuperClass)));
+        mocks.add(givenLazyMock(HashSet.class, "set", unusedSupplier));
+        givenClassWithUniqueNamedFieldsOfSameType();
+
+        new MockInjector(mocks).injectTo(classUniqueNamedFields);
+
+        assertFieldsInjectedByName();
+        assertEquals(0, unusedSupplier.calls);
+        assertFalse(mocks.get(2).isMaterialized());
+    }
+
+    private MockHolder givenLazyMock(Class<?> type, String sourceName, CountingSupplier supplier) throws Exception {
+        return MockHolder.lazy(type, getClass().getDeclaredField(sourceName), null, supplier);
+    }
+
+    @Test
+    public void testInjectMocksOfRegistryShouldInjectTheReplacedMock() {
+        givenMocks(superClass, clazz, subClass);
+        MockRegistry registry = new MockRegistry(mocks);
+        MockInjector registryInjector = new MockInjector(registry);
+        registryInjector.injectTo(new TestedClassWithAllUniqueField());
+
+        registry.replace(mocks.get(0), MockHolder.create(anotherSuperClass, getFieldNameOf(superClass), null));
+        givenClassWithUniqueTypeFields();
+        registryInjector.injectTo(classUniqueTypeField);
+
+        assertEquals(anotherSuperClass, classUniqueTypeField.superClass);
+        assertEquals(clazz, classUniqueTypeField.clazz);
+        assertEquals(subClass, classUniqueTypeField.subClass);
+    }
+
+    @Test
+    public void testInjectMocksOfRegistryShouldKeepUnaffectedPlanWhenMocksAreRemoved() {
+        givenMocks(superClass, set);
+        MockRegistry registry = new MockRegistry(mocks);
+        MockInjector registryInjector = new MockInjector(registry);
+        registryInjector.injectTo(new TestedClassWithInterfaceField());
+
+        registry.remove(mocks.get(0));
+        givenTestedClassWithInterfaceField();
+        registryInjector.injectTo(classWithInterfaceField);
+
+        assertInterfaceImplIsInjected();
+    }
+
+    @Test
+    public void testInjectMocksShouldNotSeeChangesOfMocksAfterCreation() {
+        givenMocks(superClass, clazz, subClass);
+        mocks.clear();
+        givenClassWithUniqueTypeFields();
+
+        underTest.injectTo(classUniqueTypeField);
+
+        assertFieldsAreInjectedByType();
+    }
+
+    @Test
+    public void testInjectMocksShouldBeSafeFromManyThreads() throws Exception {
+        givenMocks(superClass, clazz, subClass);
+        final List<Object> targets = givenTargetsOfDifferentClasses(400);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            final int offset = i;
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = offset; j < targets.size(); j += 4) {
+                        underTest.injectTo(targets.get(j));
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    private List<Object> givenTargetsOfDifferentClasses(int count) {
+        List<Object> targets = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            targets.add(i % 2 == 0 ? new TestedClassWithAllUniqueField() : new TestedClassWithInheritedFields());
+        }
+        return targets;
+    }
+
+    private void assertEveryTargetIsInjected(List<Object> targets) {
+        for (Object target : targets) {
+            TestedClassWithAllUniqueField injected = (TestedClassWithAllUniqueField) target;
+            assertEquals(superClass, injected.superClass);
+            assertEquals(clazz, injected.clazz);
+            assertEquals(subClass, injected.subClass);
+        }
+    }
+
     private void givenMocks(Object... mocks) {
         this.mocks = new ArrayList<MockHolder>();
         for (Object mock : mocks) {
@@ -186,6 +452,22 @@ public class MockInjectorTest {
         set = new HashSet<String>();
     }
 
+    private static class CountingSupplier implements Supplier<Object> {
+
+        private final Object mock;
+        private int calls;
+
+        CountingSupplier(Object mock) {
+            this.mock = mock;
+        }
+
+        @Override
+        public Object get() {
+            calls++;
+            return mock;
+        }
+    }
+
     private static class SuperClass {
     }
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockannotations.selection.MockIndex;
+
+/**
+ * Unit test for {@link MockRegistry}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class MockRegistryTest {
+
+    private static final Class<?>[] QUERIED_TYPES = {Object.class, Collection.class, List.class, ArrayList.class,
+        LinkedList.class, HashSet.class, Map.class, String.class, CharSequence.class};
+
+    private MockRegistry underTest;
+
+    @Before
+    public void setUp() {
+        underTest = new MockRegistry();
+    }
+
+    @Test
+    public void testAddShouldPublishNewVersionWithFrozenMock() {
+        MockHolder mock = MockHolder.create(new ArrayList<Object>(), null, null);
+        MockRegistry.Snapshot before = underTest.getSnapshot();
+
+        MockHolder registered = underTest.add(mock);
+
+        assertEquals(before.getVersion() + 1, underTest.getVersion());
+        assertEquals(Arrays.asList(registered), underTest.getSnapshot().getMocks());
+        assertSame(registered, registered.freeze());
+        assertTrue(before.getMocks().isEmpty());
+    }
+
+    @Test
+    public void testRemoveShouldAcceptTheAddedOrTheRegisteredHolder() {
+        MockHolder first = MockHolder.create(new ArrayList<Object>(), null, null);
+        MockHolder second = MockHolder.create(new HashSet<Object>(), null, null);
+        underTest.add(first);
+        MockHolder registeredSecond = underTest.add(second);
+
+        assertTrue(underTest.remove(first));
+        assertTrue(underTest.remove(registeredSecond));
+        assertFalse(underTest.remove(first));
+
+        assertTrue(underTest.getSnapshot().getMocks().isEmpty());
+    }
+
+    @Test
+    public void testReplaceShouldKeepThePosition() {
+        MockHolder first = MockHolder.create(new ArrayList<Object>(), null, null);
+        MockHolder second = MockHolder.create(new HashSet<Object>(), null, null);
+        MockHolder replacement = MockHolder.create(new LinkedList<Object>(), null, null);
+        underTest.add(first);
+        MockHolder registeredSecond = underTest.add(second);
+
+        MockHolder registered = underTest.replace(first, replacement);
+
+        assertEquals(Arrays.asList(registered, registeredSecond), underTest.getSnapshot().getMocks());
+        assertNull(underTest.replace(first, replacement));
+    }
+
+    @Test
+    public void testIsUnchangedSinceShouldOnlyReportTheAffectedTypes() {
+        underTest.add(MockHolder.create(new ArrayList<Object>(), null, null));
+        long version = underTest.getVersion();
+
+        underTest.add(MockHolder.create("string", null, null));
+        MockRegistry.Snapshot current = underTest.getSnapshot();
+
+        assertTrue(current.isUnchangedSince(version, new Class<?>[]{List.class, Map.class}));
+        assertFalse(current.isUnchangedSince(version, new Class<?>[]{List.class, CharSequence.class}));
+        assertFalse(current.isUnchangedSince(version, new Class<?>[]{Object.class}));
+    }
+
+    @Test
+    public void testArrayMockShouldAffectEveryType() {
+        long version = underTest.getVersion();
+
+        underTest.add(MockHolder.create(new String[0], null, null));
+
+        assertFalse(underTest.getSnapshot().isUnchangedSince(version, new Class<?>[]{Map.class}));
+    }
+
+    @Test
+    public void testIndexOfEverySnapshotShouldMatchTheRebuiltIndex() {
+        Random random = new Random(20141017L);
+        Object[] instances = {new ArrayList<Object>(), new LinkedList<Object>(), new HashSet<Object>(), "string"};
+        List<MockHolder> added = new ArrayList<MockHolder>();
+        for (int step = 0; step < 200; step++) {
+            int operation = random.nextInt(3);
+            MockHolder mock = MockHolder.create(instances[random.nextInt(instances.length)], null, null);
+            if (operation == 0 || added.isEmpty()) {
+                added.add(underTest.add(mock));
+            } else if (operation == 1) {
+                underTest.remove(added.remove(random.nextInt(added.size())));
+            } else {
+                int position = random.nextInt(added.size());
+                added.set(position, underTest.replace(added.get(position), mock));
+            }
+            assertSameIndex(MockIndex.of(added), underTest.getSnapshot().getIndex());
+        }
+    }
+
+    private void assertSameIndex(MockIndex expected, MockIndex actual) {
+        assertEquals(expected.getMocks(), actual.getMocks());
+        for (Class<?> type : QUERIED_TYPES) {
+            assertEquals(type.getName(), expected.getClosestMocks(type), actual.getClosestMocks(type));
+        }
+    }
+}
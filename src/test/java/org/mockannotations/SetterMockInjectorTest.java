@@ -22,6 +22,10 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -108,6 +112,75 @@ public class SetterMockInjectorTest {
 
     }
 
+    @Test
+    public void testInjectAllShouldInjectEveryTargetOfEveryClass() {
+        givenMocks(superClass, clazz, subClass);
+        List<Object> targets = givenTargetsOfDifferentClasses(200);
+
+        underTest.injectAll(targets);
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test
+    public void testInjectAllShouldRunTasksOnTheGivenExecutor() throws Exception {
+        givenMocks(superClass, clazz, subClass);
+        List<Object> targets = givenTargetsOfDifferentClasses(200);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            underTest.injectAll(targets, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test
+    public void testInjectAllShouldInjectOnCallingThreadWhenExecutorRejects() {
+        givenMocks(superClass, clazz, subClass);
+        List<Object> targets = givenTargetsOfDifferentClasses(50);
+
+        underTest.injectAll(targets, new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        assertEveryTargetIsInjected(targets);
+    }
+
+    @Test
+    public void testInjectMocksShouldNotSeeChangesOfMocksAfterCreation() {
+        givenMocks(superClass, clazz, subClass);
+        mocks.get(0).setMock(new SuperClass());
+        givenClassWithUniqueTypeFields();
+
+        underTest.injectTo(classUniqueTypeField);
+
+        assertFieldsAreInjectedByType();
+    }
+
+    private List<Object> givenTargetsOfDifferentClasses(int count) {
+        List<Object> targets = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            targets.add(i % 2 == 0 ? new TestedClassWithAllUniqueField() : new TestedClassWithInheritedFields());
+        }
+        return targets;
+    }
+
+    private void assertEveryTargetIsInjected(List<Object> targets) {
+        for (Object target : targets) {
+            TestedClassWithAllUniqueField injected = (TestedClassWithAllUniqueField) target;
+            assertEquals(superClass, injected.superClass);
+            assertEquals(clazz, injected.clazz);
+            assertEquals(subClass, injected.subClass);
+        }
+    }
+
     private void givenMocks(Object... mocks) {
         this.mocks = new ArrayList<MockHolder>();
         for (Object mock : mocks) {
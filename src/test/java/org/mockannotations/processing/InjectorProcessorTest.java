@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import static org.mockannotations.utils.MockAnnotationValidationUtils.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mockannotations.ClassInitializer;
+import org.mockannotations.ClassInjector;
+import org.mockannotations.GeneratedInjector;
+import org.mockannotations.GeneratedInjectors;
+import org.mockannotations.InjectionEngine;
+import org.mockannotations.InjectionEngines;
+import org.mockannotations.MockHolder;
+import org.mockannotations.MockInjector;
+
+/**
+ * Unit test for {@link InjectorProcessor}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class InjectorProcessorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int GC_ATTEMPTS = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Object repository;
+    private JavaCompiler compiler;
+    private File sources;
+    private File classes;
+
+    @Before
+    public void setUp() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        sources = folder.newFolder("sources");
+        classes = folder.newFolder("classes");
+    }
+
+    @Test
+    public void testProcessShouldGenerateInjectorSource() throws Exception {
+        compileSample();
+
+        String source = read(new File(sources, "sample/Service_MockInjector.java"));
+
+        assertTrue(source.contains("((sample.Service) target).repository = (sample.Repository) value;"));
+        assertTrue(source.contains("((sample.Service) target).setName((java.lang.String) value);"));
+        assertTrue(source.contains("return new sample.Service((sample.Repository) arguments[0]);"));
+    }
+
+    @Test
+    public void testProcessShouldRegisterInjectorAsService() throws Exception {
+        compileSample();
+
+        String services = read(new File(classes, InjectorProcessor.SERVICE_FILE));
+
+        assertEquals("sample.Service_MockInjector", services.trim());
+    }
+
+    @Test
+    public void testGeneratedInjectorShouldBeUsedByRuntime() throws Exception {
+        compileSample();
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> serviceClass = classLoader.loadClass("sample.Service");
+        repository = classLoader.loadClass("sample.Repository").newInstance();
+        Field source = getClass().getDeclaredField("repository");
+        List<MockHolder> mocks = Arrays.asList(MockHolder.create(repository, source, "repository"));
+
+        GeneratedInjector injector = GeneratedInjectors.find(serviceClass);
+        Object service = new ClassInitializer().initialize(serviceClass, mocks);
+        new MockInjector(mocks).injectTo(service);
+
+        assertNotNull(injector);
+        assertEquals(Arrays.asList("()", "(sample.Repository)"), Arrays.asList(injector.getConstructorSignatures()));
+        assertEquals(repository, valueOf(service, "repository"));
+        assertEquals(repository, valueOf(service, "hidden"));
+    }
+
+    @Test
+    public void testRuntimeShouldSkipProviderWhichCannotBeLoaded() throws Exception {
+        compileSample();
+        File services = new File(classes, InjectorProcessor.SERVICE_FILE);
+        Files.write(services.toPath(), Arrays.asList("sample.Missing_MockInjector", read(services).trim()), UTF_8);
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> serviceClass = classLoader.loadClass("sample.Service");
+        Class<?> repositoryClass = classLoader.loadClass("sample.Repository");
+        repository = repositoryClass.newInstance();
+        Field source = getClass().getDeclaredField("repository");
+        List<MockHolder> mocks = Arrays.asList(MockHolder.create(repository, source, "repository"));
+
+        Object service = new ClassInitializer().initialize(serviceClass, mocks);
+        new MockInjector(mocks).injectTo(service);
+
+        assertNotNull(GeneratedInjectors.find(serviceClass));
+        assertNull(GeneratedInjectors.find(repositoryClass));
+        assertEquals(repository, valueOf(service, "hidden"));
+    }
+
+    @Test
+    public void testRuntimeShouldWriteFieldsByExplicitEngine() throws Exception {
+        compileSample();
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> serviceClass = classLoader.loadClass("sample.Service");
+        repository = classLoader.loadClass("sample.Repository").newInstance();
+        Field source = getClass().getDeclaredField("repository");
+        List<MockHolder> mocks = Arrays.asList(MockHolder.create(repository, source, "repository"));
+        final List<Class<?>> injectedTypes = new ArrayList<Class<?>>();
+        InjectionEngine engine = new InjectionEngine() {
+
+            @Override
+            public ClassInjector injectorFor(Class<?> type) {
+                injectedTypes.add(type);
+                return InjectionEngines.REFLECTIVE.injectorFor(type);
+            }
+        };
+        Object service = new ClassInitializer().initialize(serviceClass, mocks);
+
+        new MockInjector(mocks, engine).injectTo(service);
+
+        assertEquals(Arrays.<Class<?>>asList(serviceClass), injectedTypes);
+        assertEquals(repository, valueOf(service, "hidden"));
+    }
+
+    @Test
+    public void testRuntimeShouldNotPinClassLoaderOfGeneratedInjectors() throws Exception {
+        compileSample();
+        WeakReference<ClassLoader> classLoader = loadInjectorOfService();
+
+        for (int attempt = 0; attempt < GC_ATTEMPTS && notNull(classLoader.get()); attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(classLoader.get());
+    }
+
+    private WeakReference<ClassLoader> loadInjectorOfService() throws Exception {
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        assertNotNull(GeneratedInjectors.find(classLoader.loadClass("sample.Service")));
+        return new WeakReference<ClassLoader>(classLoader);
+    }
+
+    private void compileSample() throws IOException {
+        File repository = write("sample/Repository.java",
+                "package sample;",
+                "public class Repository {}");
+        File service = write("sample/Service.java",
+                "package sample;",
+                "public class Service {",
+                "    Repository repository;",
+                "    private Repository hidden;",
+                "    private String name;",
+                "    public Service(Repository repository) { this.repository = repository; }",
+                "    Service() {}",
+                "    public void setName(String name) { this.name = name; }",
+                "}");
+        File test = write("sample/ServiceTest.java",
+                "package sample;",
+                "@org.mockannotations.processing.GenerateInjectors(Service.class)",
+                "public class ServiceTest {}");
+        List<String> arguments = new ArrayList<String>(Arrays.asList(
+                "-classpath", classpathOf(GeneratedInjector.class),
+                "-processor", InjectorProcessor.class.getName(),
+                "-s", sources.getPath(), "-d", classes.getPath(),
+                repository.getPath(), service.getPath(), test.getPath()));
+        int result = compiler.run(null, null, null, arguments.toArray(new String[arguments.size()]));
+        assertEquals(0, result);
+    }
+
+    private File write(String path, String... lines) throws IOException {
+        File file = new File(sources, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), Arrays.asList(lines), UTF_8);
+        return file;
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+
+    private String classpathOf(Class<?> clazz) {
+        return new File(clazz.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+    }
+
+    private Object valueOf(Object target, String name) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+}
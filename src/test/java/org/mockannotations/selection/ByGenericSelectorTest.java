@@ -16,9 +16,11 @@
 package org.mockannotations.selection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +56,11 @@ public class ByGenericSelectorTest {
         underTest = new ByGenericSelector();
     }
 
+    @Test
+    public void testGetSingletonShouldReturnTheSameInstance() {
+        assertSame(ByGenericSelector.getSingleton(), ByGenericSelector.getSingleton());
+    }
+
     @Test
     public void testSelectShouldReturnOnlyMockWithSameGenericParameters() {
         givenMocks(stringObjectHolder, integerStringHolder);
@@ -84,6 +91,16 @@ public class ByGenericSelectorTest {
         assertTrue(matchingMocks.isEmpty());
     }
 
+    @Test
+    public void testSelectShouldMatchCopiedGenericParameters() {
+        givenMocks(stringObjectHolder, integerStringHolder);
+
+        List<MockHolder> matchingMocks = underTest.select(Arrays.<Type>asList(Integer.class, String.class), mocks);
+
+        assertEquals(integerStringHolder, matchingMocks.get(0));
+        assertEquals(1, matchingMocks.size());
+    }
+
     private void initializeMocks() throws NoSuchFieldException {
         stringObjectMap = new HashMap<String, Object>();
         stringObjectHolder = new MockHolder();
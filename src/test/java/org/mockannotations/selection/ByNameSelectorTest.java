@@ -16,6 +16,8 @@
 package org.mockannotations.selection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
@@ -25,6 +27,7 @@ import static org.mockannotations.selection.ByNameSelector.NAME_EQUALS_STRATEGY;
 
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
@@ -114,11 +117,121 @@ public class ByNameSelectorTest {
         ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY, NAME_EQUALS_IGNORE_CASE_STRATEGY, NAME_CONTAINS_STRATEGY);
     }
 
+    @Test
+    public void testSelectWithOwnStrategiesShouldNotBeAffectedByOverride() {
+        givenMockHolderFields();
+        ByNameSelector containsSelector = new ByNameSelector(SelectionStrategies.of(NAME_CONTAINS_STRATEGY));
+
+        ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY);
+        List<MockHolder> actual;
+        try {
+            actual = containsSelector.select("holderInName", mocks);
+        } finally {
+            ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY, NAME_EQUALS_IGNORE_CASE_STRATEGY,
+                    NAME_CONTAINS_STRATEGY);
+        }
+
+        assertEquals(holder, firstElementOf(actual));
+    }
+
+    @Test
+    public void testOverrideStrategyShouldReplaceTheGlobalStrategies() {
+        SelectionStrategies before = ByNameSelector.getStrategies();
+
+        ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY, NAME_EQUALS_IGNORE_CASE_STRATEGY, NAME_CONTAINS_STRATEGY);
+        SelectionStrategies after = ByNameSelector.getStrategies();
+
+        assertNotSame(before, after);
+        assertEquals(ByNameSelector.DEFAULT_STRATEGIES, after);
+    }
+
+    @Test
+    public void testGetSingletonShouldReturnTheSameInstance() {
+        assertSame(ByNameSelector.getSingleton(), ByNameSelector.getSingleton());
+    }
+
+    @Test
+    public void testSelectWithIndexShouldSelectEqualName() {
+        givenMockHolderFields();
+
+        List<MockHolder> actual = underTest.select("mockHolder", MockIndex.of(mocks));
+
+        assertEquals(mockHolder, firstElementOf(actual));
+    }
+
+    @Test
+    public void testSelectWithIndexShouldSelectEqualIgnoreCaseName() {
+        givenMockHolderFields();
+
+        List<MockHolder> actual = underTest.select("lowerCaseMock", MockIndex.of(mocks));
+
+        assertEquals(lowercasemock, firstElementOf(actual));
+    }
+
+    @Test
+    public void testSelectWithIndexShouldSelectMockHolderWhenItsNameContainedInFieldsName() {
+        givenMockHolderFields();
+
+        List<MockHolder> actual = underTest.select("holderInName", MockIndex.of(mocks));
+
+        assertEquals(holder, firstElementOf(actual));
+    }
+
+    @Test
+    public void testSelectWithIndexShouldReturnFirstMockWhenNoMatchingOne() {
+        givenMockHolderFields();
+
+        List<MockHolder> actual = underTest.select("noSuchField", MockIndex.of(mocks));
+
+        assertEquals(mockHolder, firstElementOf(actual));
+    }
+
+    @Test
+    public void testSelectWithIndexShouldReturnEmptyMocksWhenMockListIsEmpty() {
+        List<MockHolder> actual = underTest.select("name", MockIndex.of(Collections.<MockHolder>emptyList()));
+
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    public void testSelectWithIndexShouldSelectFromTheCandidatesOnly() {
+        givenMockHolderFields();
+        MockIndex index = MockIndex.of(mocks);
+
+        List<MockHolder> actual = underTest.select("mockHolder", Arrays.asList(lowercasemock, holder), index);
+
+        assertEquals(lowercasemock, firstElementOf(actual));
+    }
+
+    @Test
+    public void testSelectWithIndexShouldSelectTheFirstMatchingCandidate() {
+        givenMockHolderFields();
+        MockIndex index = MockIndex.of(mocks);
+
+        List<MockHolder> actual = underTest.select("holderMock", Arrays.asList(lowercasemock, holder), index);
+
+        assertEquals(holder, firstElementOf(actual));
+    }
+
+    @Test
+    public void testSelectWithIndexShouldHonorCustomStrategy() {
+        givenMockHolderFields();
+
+        ByNameSelector.overrideStrategy(new StartsWithStrategy(), NAME_EQUALS_STRATEGY);
+        List<MockHolder> actual = underTest.select("lower", MockIndex.of(mocks));
+
+        assertEquals(lowercasemock, firstElementOf(actual));
+        ByNameSelector.overrideStrategy(NAME_EQUALS_STRATEGY, NAME_EQUALS_IGNORE_CASE_STRATEGY, NAME_CONTAINS_STRATEGY);
+    }
+
     private void givenMockHolderFields() {
         mocks = new ArrayList<MockHolder>();
         when(mockHolder.getSourceName()).thenReturn("mockHolder");
         when(holder.getSourceName()).thenReturn("holder");
         when(lowercasemock.getSourceName()).thenReturn("lowercasemock");
+        when(mockHolder.getFoldedSourceName()).thenCallRealMethod();
+        when(holder.getFoldedSourceName()).thenCallRealMethod();
+        when(lowercasemock.getFoldedSourceName()).thenCallRealMethod();
         mocks.add(mockHolder);
         mocks.add(holder);
         mocks.add(lowercasemock);
@@ -127,4 +240,12 @@ public class ByNameSelectorTest {
     private MockHolder firstElementOf(List<MockHolder> actual) {
         return actual.get(0);
     }
+
+    private static class StartsWithStrategy implements ByNameSelector.SelectionStrategy {
+
+        @Override
+        public boolean isMatching(String targetName, String mockSourceName) {
+            return mockSourceName.startsWith(targetName);
+        }
+    }
 }
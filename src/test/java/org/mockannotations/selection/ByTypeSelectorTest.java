@@ -16,6 +16,8 @@
 package org.mockannotations.selection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -25,6 +27,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -51,6 +54,11 @@ public class ByTypeSelectorTest {
         underTest = new ByTypeSelector();
     }
 
+    @Test
+    public void testGetSingletonShouldReturnTheSameInstance() {
+        assertSame(ByTypeSelector.getSingleton(), ByTypeSelector.getSingleton());
+    }
+
     @Test
     public void testSelectShouldReturnEmptyListWhenNoMatchByType() {
         givenMocksOf(arrayListMock, linkedListMock, hashSetMock);
@@ -78,6 +86,58 @@ public class ByTypeSelectorTest {
         assertContainsOnly(selectedMocks, arrayListMock);
     }
 
+    @Test
+    public void testSelectShouldSelectLazyMocksByDeclaredTypeWithoutCreatingThem() {
+        MockHolder lazyList = MockHolder.lazy(List.class, null, null, new FailingSupplier());
+        MockHolder lazySet = MockHolder.lazy(HashSet.class, null, null, new FailingSupplier());
+        mocks = Arrays.asList(lazyList, lazySet);
+
+        List<MockHolder> selectedMocks = underTest.select(List.class, MockIndex.of(mocks));
+
+        assertEquals(Arrays.asList(lazyList), selectedMocks);
+        assertFalse(lazyList.isMaterialized());
+        assertFalse(lazySet.isMaterialized());
+    }
+
+    @Test
+    public void testSelectWithIndexShouldSelectLazyInterfaceMockAsObjectLikeTheList() {
+        MockHolder lazyList = MockHolder.lazy(List.class, null, null, new FailingSupplier());
+        givenMocksOf(lazyList);
+
+        List<MockHolder> selectedMocks = underTest.select(Object.class, MockIndex.of(mocks));
+
+        assertEquals(underTest.select(Object.class, mocks), selectedMocks);
+        assertEquals(Arrays.asList(lazyList), selectedMocks);
+    }
+
+    @Test
+    public void testSelectWithIndexShouldRankLazyInterfaceMockAsObjectLikeTheList() {
+        MockHolder lazyList = MockHolder.lazy(List.class, null, null, new FailingSupplier());
+        givenMocksOf(lazyList, arrayListMock, hashSetMock);
+
+        List<MockHolder> selectedMocks = underTest.select(Object.class, MockIndex.of(mocks));
+
+        assertEquals(underTest.select(Object.class, mocks), selectedMocks);
+    }
+
+    @Test
+    public void testSelectWithIndexShouldReturnOneMockWhenThereIsOneClosest() {
+        givenMocksOf(arrayListMock, linkedListMock, hashSetMock);
+
+        List<MockHolder> selectedMocks = underTest.select(List.class, MockIndex.of(mocks));
+
+        assertContainsOnly(selectedMocks, arrayListMock);
+    }
+
+    @Test
+    public void testSelectWithIndexShouldReturnListOfMockWhenMoreMocksAreAtSameInheritanceLevel() {
+        givenMocksOf(arrayListMock, linkedListMock, hashSetMock);
+
+        List<MockHolder> selectedMocks = underTest.select(Collection.class, MockIndex.of(mocks));
+
+        assertContainsOnly(selectedMocks, arrayListMock, hashSetMock);
+    }
+
     private void initilaizeMockHolders() {
         arrayListMock = new MockHolder();
         arrayListMock.setMock(new ArrayList<Object>());
@@ -98,4 +158,12 @@ public class ByTypeSelectorTest {
         assertEquals(expectations.length, actual.size());
     }
 
+
+    private static class FailingSupplier implements Supplier<Object> {
+
+        @Override
+        public Object get() {
+            throw new AssertionError("The mock should not be created!");
+        }
+    }
 }
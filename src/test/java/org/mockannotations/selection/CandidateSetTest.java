@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CandidateSet}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class CandidateSetTest {
+
+    private CandidateSet underTest;
+
+    @Test
+    public void testNewSetShouldContainEveryPosition() {
+        givenSetOf(130);
+
+        assertEquals(130, underTest.cardinality());
+        assertTrue(underTest.contains(0));
+        assertTrue(underTest.contains(129));
+        assertFalse(underTest.contains(130));
+    }
+
+    @Test
+    public void testNextShouldIterateOverWordBoundaries() {
+        givenSetOf(200);
+        underTest.clear();
+        underTest.add(3);
+        underTest.add(64);
+        underTest.add(199);
+
+        assertEquals(3, underTest.first());
+        assertEquals(64, underTest.next(3));
+        assertEquals(199, underTest.next(64));
+        assertEquals(CandidateSet.NONE, underTest.next(199));
+    }
+
+    @Test
+    public void testRetainAllShouldKeepTheIntersection() {
+        givenSetOf(10);
+        underTest.remove(4);
+
+        underTest.retainAll(new int[]{1, 4, 7, 12});
+
+        assertEquals("CandidateSet[1, 7]", underTest.toString());
+    }
+
+    @Test
+    public void testRetainOnlyShouldKeepOnePosition() {
+        givenSetOf(70);
+
+        underTest.retainOnly(65);
+
+        assertEquals(1, underTest.cardinality());
+        assertEquals(65, underTest.first());
+    }
+
+    @Test
+    public void testResetShouldReuseTheSetForAnotherSize() {
+        givenSetOf(100);
+        underTest.clear();
+
+        underTest.reset(5);
+
+        assertEquals(5, underTest.cardinality());
+        assertEquals(5, underTest.size());
+        assertFalse(underTest.contains(64));
+    }
+
+    @Test
+    public void testEmptySetShouldHaveNoPositions() {
+        givenSetOf(0);
+
+        assertTrue(underTest.isEmpty());
+        assertEquals(CandidateSet.NONE, underTest.first());
+    }
+
+    private void givenSetOf(int size) {
+        underTest = new CandidateSet(size);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.mockannotations.MockHolder;
+
+/**
+ * Unit test for {@link FusedMockSelector}. The results are compared to the chain of {@link ByTypeSelector},
+ * {@link ByGenericSelector} and {@link ByNameSelector}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class FusedMockSelectorTest {
+
+    private static final int ITERATIONS = 500;
+    private static final int MAX_MOCKS = 8;
+    private static final Object[] INSTANCES = {new ArrayList<Object>(), new LinkedList<Object>(),
+        new HashSet<Object>(), new TreeSet<Object>(), "string", new Object(), null};
+    private static final Class<?>[] LAZY_TYPES = {List.class, Collection.class, Set.class};
+
+    private final Random random = new Random(20141017L);
+
+    private FusedMockSelector underTest = new FusedMockSelector();
+
+    @Test
+    public void testSelectSlotShouldSelectTheSameMockAsTheSelectorChain() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<MockHolder> mocks = randomMocks();
+            for (Field target : Targets.class.getDeclaredFields()) {
+                assertEquals(describe(target, mocks), chainSlotOf(target, mocks), underTest.selectSlot(target, mocks));
+            }
+        }
+    }
+
+    @Test
+    public void testSelectSlotWithIndexShouldSelectTheSameMockAsTheSelectorChain() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<MockHolder> mocks = randomMocks();
+            MockIndex index = MockIndex.of(mocks);
+            for (Field target : Targets.class.getDeclaredFields()) {
+                assertEquals(describe(target, mocks), chainSlotOf(target, mocks), underTest.selectSlot(target, index));
+            }
+        }
+    }
+
+    @Test
+    public void testSelectShouldReturnEmptyListWhenNoMockIsSelected() throws Exception {
+        List<MockHolder> mocks = Arrays.asList(mockOf("string", "name"));
+
+        assertTrue(underTest.select(Targets.class.getDeclaredField("map"), mocks).isEmpty());
+    }
+
+    @Test
+    public void testSelectShouldReturnTheSelectedMock() throws Exception {
+        MockHolder list = mockOf(new ArrayList<Object>(), "list");
+        List<MockHolder> mocks = Arrays.asList(mockOf(new ArrayList<Object>(), "listMock"), list);
+
+        List<MockHolder> selected = underTest.select(Targets.class.getDeclaredField("list"), mocks);
+
+        assertEquals(Arrays.asList(list), selected);
+    }
+
+    private int chainSlotOf(Field target, List<MockHolder> mocks) {
+        List<MockHolder> selected = new ByTypeSelector().selectByField(target, mocks);
+        selected = new ByGenericSelector().selectByField(target, selected);
+        selected = new ByNameSelector().selectByField(target, selected);
+        return selected.isEmpty() ? FusedMockSelector.NO_MOCK : identityIndexOf(selected.get(0), mocks);
+    }
+
+    private int identityIndexOf(MockHolder mock, List<MockHolder> mocks) {
+        int index = 0;
+        while (mocks.get(index) != mock) {
+            index++;
+        }
+        return index;
+    }
+
+    private List<MockHolder> randomMocks() {
+        Field[] sources = Sources.class.getDeclaredFields();
+        List<MockHolder> mocks = new ArrayList<MockHolder>();
+        int count = random.nextInt(MAX_MOCKS + 1);
+        for (int i = 0; i < count; i++) {
+            int choice = random.nextInt(INSTANCES.length + LAZY_TYPES.length);
+            Field source = sources[random.nextInt(sources.length)];
+            if (choice < INSTANCES.length) {
+                mocks.add(MockHolder.create(INSTANCES[choice], source, null));
+            } else {
+                mocks.add(MockHolder.lazy(LAZY_TYPES[choice - INSTANCES.length], source, null, new ListSupplier()));
+            }
+        }
+        return mocks;
+    }
+
+    private MockHolder mockOf(Object instance, String sourceName) throws NoSuchFieldException {
+        MockHolder mock = new MockHolder();
+        mock.setMock(instance);
+        mock.setSourceField(Sources.class.getDeclaredField(sourceName));
+        return mock;
+    }
+
+    private String describe(Field target, List<MockHolder> mocks) {
+        return target.getName() + " <- " + mocks;
+    }
+
+    private static class ListSupplier implements Supplier<Object> {
+
+        @Override
+        public Object get() {
+            return new ArrayList<Object>();
+        }
+    }
+
+    private static class Sources {
+
+        List<String> list;
+        List<String> List;
+        List<String> listMock;
+        List<Integer> integers;
+        Collection<String> strings;
+        Set<String> stringSet;
+        Object object;
+        Object name;
+        Map<String, String> map;
+        ArrayList<String> arrayList;
+        Iterable<String> s;
+    }
+
+    private static class Targets {
+
+        List<String> list;
+        Collection<String> strings;
+        Set<String> set;
+        Object object;
+        ArrayList<String> arrayListTarget;
+        Map<String, String> map;
+        List<Integer> listOfIntegers;
+        Iterable<String> iterable;
+        String name;
+        CharSequence sequence;
+        int primitive;
+    }
+}
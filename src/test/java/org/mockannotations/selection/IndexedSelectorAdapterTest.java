@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.mockannotations.MockHolder;
+
+/**
+ * Unit test for {@link IndexedSelectorAdapter}. The candidate set based selection of the built-in selectors is
+ * compared to their list based selection.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class IndexedSelectorAdapterTest {
+
+    private static final int ITERATIONS = 300;
+    private static final int MAX_MOCKS = 80;
+    private static final Object[] INSTANCES = {new ArrayList<Object>(), new LinkedList<Object>(),
+        new HashSet<Object>(), "string", new Object(), null};
+
+    private final Random random = new Random(20141017L);
+
+    @Test
+    public void testByTypeSelectorShouldSelectTheSameMocksAsListBasedSelection() {
+        assertSameSelection(new ByTypeSelector());
+    }
+
+    @Test
+    public void testByGenericSelectorShouldSelectTheSameMocksAsListBasedSelection() {
+        assertSameSelection(new ByGenericSelector());
+    }
+
+    @Test
+    public void testByNameSelectorShouldSelectTheSameMocksAsListBasedSelection() {
+        assertSameSelection(new ByNameSelector());
+    }
+
+    @Test
+    public void testChainedFiltersShouldSelectTheSameMockAsSelectorChain() {
+        CandidateSet candidates = new CandidateSet(0);
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<MockHolder> mocks = randomMocks();
+            MockIndex index = MockIndex.of(mocks);
+            for (Field target : Targets.class.getDeclaredFields()) {
+                candidates.reset(mocks.size());
+                new ByTypeSelector().filterByField(target, index, candidates);
+                new ByGenericSelector().filterByField(target, index, candidates);
+                new ByNameSelector().filterByField(target, index, candidates);
+
+                assertEquals(target.getName(), chainOf(target, mocks), toList(candidates, mocks));
+            }
+        }
+    }
+
+    @Test
+    public void testSelectShouldDelegateToListBasedSelectionOfTheSelector() {
+        List<MockHolder> mocks = randomMocks();
+        final List<MockHolder> expected = new ArrayList<MockHolder>();
+        MockSelector<Class<?>> adapter = new IndexedSelectorAdapter<Class<?>>(new ByTypeSelector() {
+
+            @Override
+            public List<MockHolder> select(Class<?> selection, List<MockHolder> mocks) {
+                return expected;
+            }
+        });
+
+        assertSame(expected, adapter.select(Object.class, mocks));
+    }
+
+    @Test
+    public void testSelectShouldReindexChangedListOfIndexOnlySelector() {
+        List<MockHolder> mocks = new ArrayList<MockHolder>();
+        MockHolder mock = MockHolder.create("string", null, null);
+        mocks.add(mock);
+        MockSelector<Class<?>> adapter = new IndexedSelectorAdapter<Class<?>>(indexOnly(new ByTypeSelector()));
+        adapter.select(String.class, mocks);
+
+        mock.setMock(new Object());
+
+        assertEquals(new ArrayList<MockHolder>(), adapter.select(String.class, mocks));
+    }
+
+    private <T> void assertSameSelection(MockSelector<T> selector) {
+        MockSelector<T> adapter = new IndexedSelectorAdapter<T>(indexOnly((IndexedMockSelector<T>) selector));
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<MockHolder> mocks = randomMocks();
+            for (Field target : Targets.class.getDeclaredFields()) {
+                assertEquals(target.getName(), selector.selectByField(target, mocks),
+                        adapter.selectByField(target, mocks));
+            }
+        }
+    }
+
+    /**
+     * Hides the list based selection of the selector, so the adapter selects from an index.
+     */
+    private static <T> IndexedMockSelector<T> indexOnly(final IndexedMockSelector<T> selector) {
+        return new IndexedMockSelector<T>() {
+
+            @Override
+            public void filter(T selection, MockIndex index, CandidateSet candidates) {
+                selector.filter(selection, index, candidates);
+            }
+
+            @Override
+            public void filterByField(Field field, MockIndex index, CandidateSet candidates) {
+                selector.filterByField(field, index, candidates);
+            }
+        };
+    }
+
+    private List<MockHolder> chainOf(Field target, List<MockHolder> mocks) {
+        List<MockHolder> selected = new ByTypeSelector().selectByField(target, mocks);
+        selected = new ByGenericSelector().selectByField(target, selected);
+        return new ByNameSelector().selectByField(target, selected);
+    }
+
+    private List<MockHolder> toList(CandidateSet candidates, List<MockHolder> mocks) {
+        List<MockHolder> selected = new ArrayList<MockHolder>();
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            selected.add(mocks.get(slot));
+        }
+        return selected;
+    }
+
+    private List<MockHolder> randomMocks() {
+        Field[] sources = Sources.class.getDeclaredFields();
+        List<MockHolder> mocks = new ArrayList<MockHolder>();
+        int count = random.nextInt(MAX_MOCKS + 1);
+        for (int i = 0; i < count; i++) {
+            MockHolder mock = new MockHolder();
+            mock.setMock(INSTANCES[random.nextInt(INSTANCES.length)]);
+            mock.setSourceField(sources[random.nextInt(sources.length)]);
+            mocks.add(mock);
+        }
+        return mocks;
+    }
+
+    private static class Sources {
+
+        List<String> list;
+        List<String> listMock;
+        List<Integer> integers;
+        Collection<String> strings;
+        Set<String> stringSet;
+        Object object;
+        Object name;
+    }
+
+    private static class Targets {
+
+        List<String> list;
+        Collection<String> strings;
+        Set<String> set;
+        Object object;
+        List<Integer> listOfIntegers;
+        String name;
+        int primitive;
+    }
+}
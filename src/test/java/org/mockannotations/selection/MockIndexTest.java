@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockannotations.MockHolder;
+import org.mockannotations.utils.InheritanceDistances;
+
+/**
+ * Unit test for {@link MockIndex}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class MockIndexTest {
+
+    private static final Class<?>[] QUERIED_TYPES = {Object.class, Collection.class, List.class, AbstractList.class,
+        ArrayList.class, LinkedList.class, HashSet.class, RandomAccess.class, Serializable.class, Cloneable.class,
+        Map.class, String.class, int.class};
+
+    private List<MockHolder> mocks;
+
+    private MockIndex underTest;
+
+    @Before
+    public void setUp() {
+        mocks = Arrays.asList(MockHolder.create(new ArrayList<Object>(), null, null),
+                MockHolder.create(new LinkedList<Object>(), null, null),
+                MockHolder.create(new HashSet<Object>(), null, null),
+                MockHolder.create(null, null, null),
+                MockHolder.create(new ArrayList<Object>(), null, null),
+                MockHolder.create("string", null, null));
+    }
+
+    @Test
+    public void testGetClosestMocksShouldSelectTheSameMocksAsTheLinearSelection() {
+        givenIndexOf(mocks);
+
+        for (Class<?> type : QUERIED_TYPES) {
+            assertEquals(type.getName(), new ByTypeSelector().select(type, mocks), underTest.getClosestMocks(type));
+        }
+    }
+
+    @Test
+    public void testGetClosestMocksShouldReturnEmptyListWhenNoMockIsInstanceOfType() {
+        givenIndexOf(mocks);
+
+        assertTrue(underTest.getClosestMocks(Map.class).isEmpty());
+    }
+
+    @Test
+    public void testIsCompleteShouldBeFalseWhenArrayMockIsPresent() {
+        givenIndexOf(Arrays.asList(MockHolder.create(new ArrayList<Object>(), null, null),
+                MockHolder.create(new String[0], null, null)));
+
+        assertFalse(underTest.isComplete());
+    }
+
+    @Test
+    public void testSelectShouldFallBackToLinearSelectionWhenIndexIsIncomplete() {
+        List<MockHolder> mocksWithArray = Arrays.asList(MockHolder.create(new Object[0], null, null),
+                MockHolder.create(new String[0], null, null));
+        givenIndexOf(mocksWithArray);
+
+        List<MockHolder> selected = new ByTypeSelector().select(Object[].class, underTest);
+
+        assertEquals(new ByTypeSelector().select(Object[].class, mocksWithArray), selected);
+    }
+
+    @Test
+    public void testGetMocksShouldNotReflectLaterChangesOfTheList() {
+        List<MockHolder> original = new ArrayList<MockHolder>(mocks);
+        givenIndexOf(original);
+
+        original.clear();
+
+        assertEquals(mocks, underTest.getMocks());
+    }
+
+    @Test
+    public void testUpdateShouldGiveTheSameIndexAsBuildingItAgain() {
+        givenIndexOf(mocks);
+        List<MockHolder> changed = new ArrayList<MockHolder>(mocks);
+        MockHolder removed = changed.remove(1);
+        MockHolder added = MockHolder.create(new LinkedList<Object>(), null, null);
+        changed.add(added);
+        changed.add(MockHolder.create(new String[0], null, null));
+
+        MockIndex updated = underTest.update(changed, affectedTypesOf(removed, added));
+
+        MockIndex rebuilt = MockIndex.of(changed);
+        for (Class<?> type : QUERIED_TYPES) {
+            assertEquals(type.getName(), rebuilt.getClosestMocks(type), updated.getClosestMocks(type));
+        }
+        assertEquals(changed, updated.getMocks());
+        assertFalse(updated.isComplete());
+    }
+
+    private Set<Class<?>> affectedTypesOf(MockHolder... changedMocks) {
+        Set<Class<?>> affectedTypes = new HashSet<Class<?>>();
+        for (MockHolder changed : changedMocks) {
+            affectedTypes.addAll(InheritanceDistances.ranksOf(changed.getMockType()).keySet());
+        }
+        return affectedTypes;
+    }
+
+    private void givenIndexOf(List<MockHolder> mocks) {
+        underTest = MockIndex.of(mocks);
+    }
+}
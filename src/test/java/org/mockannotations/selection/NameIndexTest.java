@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockannotations.MockHolder;
+import org.mockannotations.selection.ByNameSelector.SelectionStrategy;
+
+/**
+ * Unit test for {@link NameIndex}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class NameIndexTest {
+
+    private static final String[] NAMES = {"repository", "userRepository", "REPOSITORY", "repo", "re", "", "service",
+        "userService", "cache", "Repository", "repository"};
+    private static final String[] TARGETS = {"repository", "Repository", "rEpOsItOrY", "repo", "re", "r", "", "user",
+        "userRepositoryImpl", "serviceRepository", "ache", "missing", "x"};
+
+    private List<MockHolder> mocks;
+
+    private NameIndex underTest;
+
+    @Before
+    public void setUp() {
+        mocks = new ArrayList<MockHolder>();
+        for (String name : NAMES) {
+            MockHolder holder = mock(MockHolder.class);
+            when(holder.getSourceName()).thenReturn(name);
+            when(holder.getFoldedSourceName()).thenCallRealMethod();
+            mocks.add(holder);
+        }
+        underTest = new NameIndex(mocks);
+    }
+
+    @Test
+    public void testEqualToShouldFindTheSameMocksAsTheStrategy() {
+        for (String target : TARGETS) {
+            assertArrayEquals(target, matchingSlots(ByNameSelector.NAME_EQUALS_STRATEGY, target),
+                    underTest.equalTo(target));
+        }
+    }
+
+    @Test
+    public void testEqualToIgnoreCaseShouldFindTheSameMocksAsTheStrategy() {
+        for (String target : TARGETS) {
+            assertArrayEquals(target, matchingSlots(ByNameSelector.NAME_EQUALS_IGNORE_CASE_STRATEGY, target),
+                    underTest.equalToIgnoreCase(target));
+        }
+    }
+
+    @Test
+    public void testContainingShouldFindTheSameMocksAsTheStrategy() {
+        for (String target : TARGETS) {
+            assertArrayEquals(target, matchingSlots(ByNameSelector.NAME_CONTAINS_STRATEGY, target),
+                    underTest.containing(target));
+        }
+    }
+
+    private int[] matchingSlots(SelectionStrategy strategy, String target) {
+        List<Integer> slots = new ArrayList<Integer>();
+        for (int slot = 0; slot < NAMES.length; slot++) {
+            if (strategy.isMatching(target, NAMES[slot])) {
+                slots.add(slot);
+            }
+        }
+        int[] result = new int[slots.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = slots.get(i);
+        }
+        return result;
+    }
+}
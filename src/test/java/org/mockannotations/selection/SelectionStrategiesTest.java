@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import static org.mockannotations.selection.ByNameSelector.NAME_CONTAINS_STRATEGY;
+import static org.mockannotations.selection.ByNameSelector.NAME_EQUALS_IGNORE_CASE_STRATEGY;
+import static org.mockannotations.selection.ByNameSelector.NAME_EQUALS_STRATEGY;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.mockannotations.selection.ByNameSelector.SelectionStrategy;
+
+/**
+ * Unit test for {@link SelectionStrategies}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class SelectionStrategiesTest {
+
+    @Test
+    public void testOfShouldKeepThePriorityOrder() {
+        SelectionStrategies strategies = SelectionStrategies.of(NAME_CONTAINS_STRATEGY, NAME_EQUALS_STRATEGY);
+
+        assertEquals(Arrays.asList(NAME_CONTAINS_STRATEGY, NAME_EQUALS_STRATEGY), strategies.asList());
+    }
+
+    @Test
+    public void testOfShouldNotSeeChangesOfTheGivenArray() {
+        SelectionStrategy[] array = {NAME_EQUALS_STRATEGY, NAME_CONTAINS_STRATEGY};
+        SelectionStrategies strategies = SelectionStrategies.of(array);
+
+        array[0] = NAME_EQUALS_IGNORE_CASE_STRATEGY;
+
+        assertEquals(NAME_EQUALS_STRATEGY, strategies.asList().get(0));
+    }
+
+    @Test
+    public void testEqualsShouldCompareTheStrategiesInOrder() {
+        SelectionStrategies strategies = SelectionStrategies.of(NAME_EQUALS_STRATEGY, NAME_CONTAINS_STRATEGY);
+
+        assertEquals(SelectionStrategies.of(NAME_EQUALS_STRATEGY, NAME_CONTAINS_STRATEGY), strategies);
+        assertEquals(SelectionStrategies.of(NAME_EQUALS_STRATEGY, NAME_CONTAINS_STRATEGY).hashCode(),
+                strategies.hashCode());
+        assertFalse(SelectionStrategies.of(NAME_CONTAINS_STRATEGY, NAME_EQUALS_STRATEGY).equals(strategies));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAsListShouldBeUnmodifiable() {
+        SelectionStrategies.of(NAME_EQUALS_STRATEGY).asList().add(NAME_CONTAINS_STRATEGY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfShouldRejectNullStrategy() {
+        SelectionStrategies.of(NAME_EQUALS_STRATEGY, null);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.selection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockannotations.MockHolder;
+
+/**
+ * Unit test for {@link TypeRankMatrix}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class TypeRankMatrixTest {
+
+    private static final Class<?>[] QUERIED_TYPES = {Object.class, Collection.class, List.class, AbstractList.class,
+        ArrayList.class, LinkedList.class, HashSet.class, RandomAccess.class, Serializable.class, Cloneable.class,
+        Map.class, String.class, Object[].class, int.class};
+
+    private List<MockHolder> mocks;
+
+    private TypeRankMatrix underTest;
+
+    @Before
+    public void setUp() {
+        mocks = Arrays.asList(MockHolder.create(new ArrayList<Object>(), null, null),
+                MockHolder.create(new LinkedList<Object>(), null, null),
+                MockHolder.create(new HashSet<Object>(), null, null),
+                MockHolder.create(null, null, null),
+                MockHolder.create(new ArrayList<Object>(), null, null),
+                MockHolder.create("string", null, null),
+                MockHolder.create(new String[0], null, null));
+        underTest = TypeRankMatrix.of(mocks);
+    }
+
+    @Test
+    public void testClosestSlotsShouldSelectTheSameMocksAsTheLinearSelection() {
+        for (Class<?> type : QUERIED_TYPES) {
+            assertEquals(type.getName(), new ByTypeSelector().select(type, mocks),
+                    toMocks(underTest.closestSlots(type)));
+        }
+    }
+
+    @Test
+    public void testClosestSlotShouldReturnTheFirstClosestMock() {
+        assertEquals(0, underTest.closestSlot(List.class));
+        assertEquals(2, underTest.closestSlot(HashSet.class));
+        assertEquals(CandidateSet.NONE, underTest.closestSlot(Map.class));
+    }
+
+    @Test
+    public void testRankShouldBeNotAssignableForMissingMock() {
+        assertEquals(TypeRankMatrix.NOT_ASSIGNABLE, underTest.rank(Object.class, 3));
+    }
+
+    @Test
+    public void testRetainClosestShouldKeepTheClosestCandidates() {
+        CandidateSet candidates = new CandidateSet(mocks.size());
+        candidates.clear();
+        candidates.add(1);
+        candidates.add(2);
+        candidates.add(4);
+
+        underTest.retainClosest(Collection.class, candidates);
+
+        assertArrayEquals(new int[]{2, 4}, slotsOf(candidates));
+    }
+
+    private int[] slotsOf(CandidateSet candidates) {
+        int[] slots = new int[candidates.cardinality()];
+        int i = 0;
+        for (int slot = candidates.first(); slot != CandidateSet.NONE; slot = candidates.next(slot)) {
+            slots[i++] = slot;
+        }
+        return slots;
+    }
+
+    private List<MockHolder> toMocks(int[] slots) {
+        List<MockHolder> selected = new ArrayList<MockHolder>();
+        for (int slot : slots) {
+            selected.add(mocks.get(slot));
+        }
+        return selected;
+    }
+}
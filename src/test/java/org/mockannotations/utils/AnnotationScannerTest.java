@@ -73,6 +73,23 @@ public class AnnotationScannerTest {
         assertFieldsFound(fields, List.class, Object.class, Set.class);
     }
 
+    @Test
+    public void testScanShouldReturnTheSameFieldsForRepeatedCalls() {
+        givenScannedClass(AnnotatedSubClass.class);
+
+        assertEquals(underTest.scan(targetClass), underTest.scan(targetClass));
+    }
+
+    @Test
+    public void testScanShouldReturnModifiableCopyOfTheFields() {
+        givenScannedClass(AnnotatedClass.class);
+
+        underTest.scan(targetClass).clear();
+        List<Field> fields = underTest.scan(targetClass);
+
+        assertFieldsFound(fields, List.class, Object.class);
+    }
+
     private void givenScannedClass(Class<?> target) {
         targetClass = target;
     }
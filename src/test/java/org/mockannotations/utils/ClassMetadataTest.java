@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+
+/**
+ * Unit test for {@link ClassMetadata}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class ClassMetadataTest {
+
+    @Test
+    public void testForClassShouldReturnTheSameMetadataForRepeatedCalls() {
+        assertSame(ClassMetadata.forClass(Child.class), ClassMetadata.forClass(Child.class));
+    }
+
+    @Test
+    public void testGetFieldsShouldReturnDeclaredFieldsFollowedByInheritedOnes() {
+        List<Field> fields = ClassMetadata.forClass(Child.class).getFields();
+
+        List<Field> inheritedFields = ClassMetadata.forClass(Parent.class).getFields();
+        assertEquals(4, fields.size());
+        assertEquals(Child.class, fields.get(0).getDeclaringClass());
+        assertSame(inheritedFields.get(0), fields.get(2));
+        assertSame(inheritedFields.get(1), fields.get(3));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetFieldsShouldBeUnmodifiable() {
+        ClassMetadata.forClass(Child.class).getFields().clear();
+    }
+
+    @Test
+    public void testForFieldShouldDetermineWritability() throws Exception {
+        assertTrue(ClassMetadata.forField(Parent.class.getDeclaredField("parentField")).isWritable());
+        assertFalse(ClassMetadata.forField(Parent.class.getDeclaredField("finalField")).isWritable());
+        assertFalse(ClassMetadata.forField(Child.class.getDeclaredField("staticField")).isWritable());
+    }
+
+    @Test
+    public void testGetAccessibleFieldShouldReturnTheCachedField() throws Exception {
+        FieldMetadata metadata = ClassMetadata.forField(Parent.class.getDeclaredField("parentField"));
+
+        Field field = metadata.getAccessibleField();
+
+        assertSame(field, metadata.getAccessibleField());
+        assertTrue(field.isAccessible());
+    }
+
+    private static class Parent {
+
+        private Object parentField;
+        private final Object finalField = new Object();
+    }
+
+    private static class Child extends Parent {
+
+        private static Object staticField;
+        private Object childField;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockannotations.utils.ClassMetadata.FieldMetadata;
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToWriteFieldException;
+
+/**
+ * Unit test for {@link FieldAccessors}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class FieldAccessorsTest {
+
+    private Field field;
+    private Target target;
+
+    @Before
+    public void setUp() throws Exception {
+        field = Target.class.getDeclaredField("value");
+        target = new Target();
+    }
+
+    @After
+    public void tearDown() {
+        FieldAccessors.setFactory(FieldAccessors.METHOD_HANDLE_FACTORY);
+    }
+
+    @Test
+    public void testMethodHandleAccessorShouldSetAndGetField() {
+        FieldAccessor accessor = FieldAccessors.METHOD_HANDLE_FACTORY.createAccessor(field);
+
+        accessor.set(target, "value");
+
+        assertEquals("value", target.value);
+        assertEquals("value", accessor.get(target));
+    }
+
+    @Test
+    public void testReflectionAccessorShouldSetAndGetField() {
+        FieldAccessor accessor = FieldAccessors.REFLECTION_FACTORY.createAccessor(field);
+
+        accessor.set(target, "value");
+
+        assertEquals("value", target.value);
+        assertEquals("value", accessor.get(target));
+    }
+
+    @Test(expected = UnableToWriteFieldException.class)
+    public void testMethodHandleAccessorShouldThrowExceptionWhenValueHasWrongType() {
+        FieldAccessors.METHOD_HANDLE_FACTORY.createAccessor(field).set(target, new Object());
+    }
+
+    @Test
+    public void testFieldMetadataShouldCacheAccessor() {
+        FieldMetadata metadata = ClassMetadata.forField(field);
+
+        assertSame(metadata.getAccessor(), metadata.getAccessor());
+    }
+
+    @Test
+    public void testFieldMetadataShouldRecreateAccessorWhenFactoryIsReplaced() {
+        FieldMetadata metadata = ClassMetadata.forField(field);
+        FieldAccessor previous = metadata.getAccessor();
+
+        FieldAccessors.setFactory(FieldAccessors.REFLECTION_FACTORY);
+
+        assertNotSame(previous, metadata.getAccessor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetFactoryShouldRejectNull() {
+        FieldAccessors.setFactory(null);
+    }
+
+    private static class Target {
+
+        private String value;
+    }
+}
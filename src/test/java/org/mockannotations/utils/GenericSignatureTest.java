@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link GenericSignature}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class GenericSignatureTest {
+
+    private Map<String, Integer> stringIntegerMap;
+    private Map<String, Integer> anotherStringIntegerMap;
+    private Map<Integer, String> integerStringMap;
+    private String string;
+
+    @Test
+    public void testOfShouldReturnTheSameInstanceForEqualGenericParameters() throws Exception {
+        GenericSignature signature = signatureOf("stringIntegerMap");
+
+        assertSame(signature, signatureOf("anotherStringIntegerMap"));
+        assertSame(signature, GenericSignature.of(Arrays.<Type>asList(String.class, Integer.class)));
+    }
+
+    @Test
+    public void testMatchesShouldBeFalseWhenParameterOrderIsDifferent() throws Exception {
+        assertFalse(signatureOf("stringIntegerMap").matches(signatureOf("integerStringMap")));
+    }
+
+    @Test
+    public void testMatchesShouldBeTrueForEqualGenericParameters() throws Exception {
+        assertTrue(signatureOf("stringIntegerMap").matches(signatureOf("anotherStringIntegerMap")));
+    }
+
+    @Test
+    public void testOfShouldReturnNoneWhenTypeIsNotParameterized() throws Exception {
+        assertSame(GenericSignature.NONE, signatureOf("string"));
+        assertSame(GenericSignature.NONE, GenericSignature.of(new ArrayList<Type>()));
+    }
+
+    @Test
+    public void testOfShouldResolveParametersOfSignatureWithoutCopy() throws Exception {
+        GenericSignature signature = signatureOf("stringIntegerMap");
+
+        assertSame(signature, GenericSignature.of(signature.getParameters()));
+    }
+
+    @Test
+    public void testGetParametersShouldReturnGenericParametersInOrder() throws Exception {
+        List<Type> parameters = signatureOf("integerStringMap").getParameters();
+
+        assertEquals(Arrays.<Type>asList(Integer.class, String.class), parameters);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetParametersShouldBeUnmodifiable() throws Exception {
+        signatureOf("integerStringMap").getParameters().clear();
+    }
+
+    private GenericSignature signatureOf(String fieldName) throws NoSuchFieldException {
+        return GenericSignature.of(getClass().getDeclaredField(fieldName));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link InheritanceDistances}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class InheritanceDistancesTest {
+
+    @Test
+    public void testDistanceShouldFollowSuperclasses() {
+        assertEquals(0, InheritanceDistances.distance(ArrayList.class, ArrayList.class));
+        assertEquals(1, InheritanceDistances.distance(ArrayList.class, AbstractList.class));
+        assertEquals(3, InheritanceDistances.distance(ArrayList.class, Object.class));
+    }
+
+    @Test
+    public void testDistanceShouldFollowInterfacesBreadthFirst() {
+        assertEquals(1, InheritanceDistances.distance(ArrayList.class, List.class));
+        assertEquals(1, InheritanceDistances.distance(ArrayList.class, RandomAccess.class));
+        assertEquals(2, InheritanceDistances.distance(ArrayList.class, Collection.class));
+        assertEquals(2, InheritanceDistances.distance(Implementation.class, Marker.class));
+        assertEquals(1, InheritanceDistances.distance(SubImplementation.class, Marker.class));
+    }
+
+    @Test
+    public void testDistanceShouldReturnNotAssignableForUnrelatedTypes() {
+        assertEquals(InheritanceDistances.NOT_ASSIGNABLE, InheritanceDistances.distance(ArrayList.class, String.class));
+        assertEquals(InheritanceDistances.NOT_ASSIGNABLE, InheritanceDistances.distance(Object.class, List.class));
+    }
+
+    @Test
+    public void testDistanceShouldHandleArrayCovariance() {
+        assertEquals(1, InheritanceDistances.distance(String[].class, Object[].class));
+        assertEquals(1, InheritanceDistances.distance(String[].class, Serializable.class));
+    }
+
+    @Test
+    public void testRankShouldPreferLessSpecializedClassAtTheSameInterfaceDistance() {
+        assertEquals(InheritanceDistances.distance(ArrayList.class, List.class),
+                InheritanceDistances.distance(LinkedList.class, List.class));
+        assertTrue(InheritanceDistances.rank(ArrayList.class, List.class)
+                < InheritanceDistances.rank(LinkedList.class, List.class));
+    }
+
+    @Test
+    public void testRankShouldNotBreakTiesOfClasses() {
+        assertEquals(InheritanceDistances.rank(SubImplementation.class, Implementation.class),
+                InheritanceDistances.rank(ArrayList.class, AbstractList.class));
+    }
+
+    @Test
+    public void testRanksOfShouldReturnTheCachedTable() {
+        assertSame(InheritanceDistances.ranksOf(ArrayList.class), InheritanceDistances.ranksOf(ArrayList.class));
+    }
+
+    @Test
+    public void testPackedRankShouldKeepTheOrderOfTheRanks() {
+        Class<?>[] types = {ArrayList.class, LinkedList.class, AbstractList.class};
+        Class<?>[] supertypes = {List.class, Collection.class, AbstractList.class, Object.class, RandomAccess.class};
+        for (Class<?> supertype : supertypes) {
+            for (Class<?> left : types) {
+                for (Class<?> right : types) {
+                    assertEquals(Long.signum(compare(left, right, supertype)),
+                            Integer.signum(compareIntegers(left, right, supertype)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPackedRankShouldReturnNotAssignable() {
+        assertEquals(InheritanceDistances.NOT_ASSIGNABLE, InheritanceDistances.packedRank(String.class, List.class));
+    }
+
+    private long compare(Class<?> left, Class<?> right, Class<?> supertype) {
+        return Long.compare(InheritanceDistances.rank(left, supertype), InheritanceDistances.rank(right, supertype));
+    }
+
+    private int compareIntegers(Class<?> left, Class<?> right, Class<?> supertype) {
+        return Integer.compare(InheritanceDistances.packedRank(left, supertype),
+                InheritanceDistances.packedRank(right, supertype));
+    }
+
+    private interface Marker {
+    }
+
+    private interface Extended extends Marker {
+    }
+
+    private static class Implementation implements Extended {
+    }
+
+    private static class SubImplementation extends Implementation implements Marker {
+    }
+}
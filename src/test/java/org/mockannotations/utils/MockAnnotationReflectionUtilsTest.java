@@ -89,6 +89,16 @@ public class MockAnnotationReflectionUtilsTest {
         assertEquals(3, allFields.size());
     }
 
+    @Test
+    public void testGetAllDeclaredFieldShouldReturnModifiableCopyOfTheFields() {
+        givenClassOf(SubClass.class);
+
+        MockAnnotationReflectionUtils.getAllDeclaredFields(clazz).clear();
+        List<Field> allFields = MockAnnotationReflectionUtils.getAllDeclaredFields(clazz);
+
+        assertEquals(3, allFields.size());
+    }
+
     @Test
     public void testGetGenericParametersShouldReturnGenericParametersOfTheField() throws Exception {
         givenField("fieldWithGenericParams");
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.mockannotations.utils.MockAnnotationReflectionUtils.UnableToInvokeSetterException;
+
+/**
+ * Unit test for {@link SetterDescriptor}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class SetterDescriptorTest {
+
+    @Test
+    public void testGetSettersShouldBeComputedOnce() {
+        ClassMetadata metadata = ClassMetadata.forClass(Bean.class);
+
+        assertSame(metadata.getSetters(), metadata.getSetters());
+    }
+
+    @Test
+    public void testDescriptorShouldHoldPropertyNameAndTypes() {
+        SetterDescriptor setter = setterOf("setMap");
+
+        assertEquals("map", setter.getPropertyName());
+        assertEquals(Map.class, setter.getType());
+        assertEquals(String.class, setter.getGenericParameters().get(0));
+        assertEquals(Integer.class, setter.getGenericParameters().get(1));
+    }
+
+    @Test
+    public void testDescriptorOfSetterWithoutPropertyNameShouldHaveEmptyName() {
+        assertTrue(setterOf("set").getPropertyName().isEmpty());
+    }
+
+    @Test
+    public void testInvokeShouldCallTheSetter() {
+        Bean bean = new Bean();
+        Object value = new Object();
+
+        setterOf("setValue").invoke(bean, value);
+
+        assertSame(value, bean.value);
+    }
+
+    @Test(expected = UnableToInvokeSetterException.class)
+    public void testInvokeShouldThrowExceptionWhenValueHasWrongType() {
+        setterOf("setMap").invoke(new Bean(), new Object());
+    }
+
+    private SetterDescriptor setterOf(String name) {
+        SetterDescriptor descriptor = null;
+        for (SetterDescriptor setter : ClassMetadata.forClass(Bean.class).getSetters()) {
+            if (setter.getMethod().getName().equals(name)) {
+                descriptor = setter;
+            }
+        }
+        return descriptor;
+    }
+
+    public static class Bean {
+
+        Object value;
+        Map<String, Integer> map;
+        List<?> list;
+
+        public void setValue(Object value) {
+            this.value = value;
+        }
+
+        public void setMap(Map<String, Integer> map) {
+            this.map = map;
+        }
+
+        public void set(List<?> list) {
+            this.list = list;
+        }
+    }
+}
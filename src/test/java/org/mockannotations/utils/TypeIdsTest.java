@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Balazs Berkes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mockannotations.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TypeIds}.
+ * <p>
+ * @author Balazs Berkes
+ */
+public class TypeIdsTest {
+
+    private static final int ATTEMPTS = 50;
+
+    @Test
+    public void testOfShouldReturnTheSameIdForTheSameClass() {
+        assertSame(TypeIds.of(String.class), TypeIds.of(String.class));
+        assertEquals(TypeIds.of(String.class).value(), TypeIds.idOf(String.class));
+    }
+
+    @Test
+    public void testOfShouldReturnDifferentIdsForDifferentClasses() {
+        assertNotSame(TypeIds.of(String.class), TypeIds.of(Integer.class));
+        assertTrue(TypeIds.idOf(String.class) != TypeIds.idOf(Integer.class));
+    }
+
+    @Test
+    public void testOfShouldReturnNoIdForMissingClass() {
+        assertNull(TypeIds.of(null));
+        assertEquals(TypeIds.NONE, TypeIds.idOf(null));
+    }
+
+    @Test
+    public void testOfShouldReclaimTheValueOfUnloadedClass() throws Exception {
+        int value = TypeIds.idOf(defineUnloadable());
+
+        boolean reclaimed = false;
+        for (int attempt = 0; attempt < ATTEMPTS && !reclaimed; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+            reclaimed = TypeIds.idOf(defineUnloadable()) == value;
+        }
+
+        assertTrue(reclaimed);
+    }
+
+    @Test
+    public void testOfShouldNotPinTheClass() throws Exception {
+        Class<?> unloadable = defineUnloadable();
+        TypeIds.of(unloadable);
+        WeakReference<ClassLoader> loader = new WeakReference<ClassLoader>(unloadable.getClassLoader());
+        unloadable = null;
+
+        for (int attempt = 0; attempt < ATTEMPTS && loader.get() != null; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(loader.get());
+    }
+
+    private Class<?> defineUnloadable() throws IOException {
+        String name = Unloadable.class.getName();
+        byte[] bytes = readBytes(name.replace('.', '/') + ".class");
+        return new DefiningClassLoader().define(name, bytes);
+    }
+
+    private byte[] readBytes(String resource) throws IOException {
+        InputStream in = TypeIdsTest.class.getClassLoader().getResourceAsStream(resource);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class DefiningClassLoader extends ClassLoader {
+
+        DefiningClassLoader() {
+            super(TypeIdsTest.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    public static class Unloadable {
+    }
+}